@@ -0,0 +1,70 @@
+package Benchmarks;
+
+import GridCell.CELL_SHAPE;
+import GridCell.Grid;
+import XML.CA_TYPE;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates grids for the benchmarks. Every automaton gets a fixed random composition and a fixed set of parameters
+ * close to the shipped config files, so that the shape, edge type and size can be varied freely.
+ */
+final class Fixtures {
+    static final long SEED = 42;
+    private static final double DISPLAY_SIZE = 400.0;
+    private static final Integer[] ALL_NEIGHBORS = {-1};
+
+    private Fixtures() {
+    }
+
+    static Grid createGrid(CA_TYPE type, CELL_SHAPE shape, String edgeType, int size) {
+        Grid grid;
+        try {
+            grid = type.getConstructor().newInstance(size, DISPLAY_SIZE);
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a " + type + " grid", e);
+        }
+        grid.setImmutables(edgeType, shape, ALL_NEIGHBORS);
+        grid.setSeed(SEED);
+        grid.setGridRandom(getComposition(type));
+        Double[] parameters = getParameters(type);
+        if (parameters.length > 0)
+            grid.setAdditionalParams(parameters);
+        return grid;
+    }
+
+    // fractions of each state, with -1 for the state that fills the rest
+    private static Double[] getComposition(CA_TYPE type) {
+        switch (type) {
+            case GAME_OF_LIFE:
+                return new Double[]{0.3, -1.0};
+            case FIRE:
+                return new Double[]{0.1, 0.85, -1.0};
+            case PREDATOR_PREY:
+                return new Double[]{0.5, 0.3, -1.0};
+            case SEGREGATION:
+                return new Double[]{0.1, 0.45, -1.0};
+            case RPS:
+                return new Double[]{0.7, 0.1, 0.1, -1.0};
+            default:
+                throw new IllegalArgumentException("No composition for " + type);
+        }
+    }
+
+    private static Double[] getParameters(CA_TYPE type) {
+        switch (type) {
+            case FIRE:
+                return new Double[]{0.5, 0.001, 3.0, 0.01};
+            case PREDATOR_PREY:
+                return new Double[]{3.0, 5.0, 2.0, 4.0};
+            case SEGREGATION:
+                return new Double[]{0.6};
+            case RPS:
+                return new Double[]{10.0};
+            default:
+                return new Double[0];
+        }
+    }
+}
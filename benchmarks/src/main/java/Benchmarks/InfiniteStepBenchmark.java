@@ -0,0 +1,50 @@
+package Benchmarks;
+
+import GridCell.CELL_SHAPE;
+import GridCell.Grid;
+import XML.CA_TYPE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps per second of the Game of Life with infinite edges, the only automaton that has them. The grid grows as the
+ * pattern spreads, so each iteration starts again from the same seeded configuration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfiniteStepBenchmark {
+    @Param({"SQUARE", "TRIANGLE", "HEXAGON"})
+    public CELL_SHAPE shape;
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Grid grid;
+
+    @Setup(Level.Iteration)
+    public void createGrid() {
+        grid = Fixtures.createGrid(CA_TYPE.GAME_OF_LIFE, shape, "infinite", size);
+    }
+
+    @Benchmark
+    public Grid step() {
+        grid.updateCells();
+        return grid;
+    }
+}
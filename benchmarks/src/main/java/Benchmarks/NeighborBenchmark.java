@@ -0,0 +1,81 @@
+package Benchmarks;
+
+import GridCell.CELL_SHAPE;
+import GridCell.EDGE_TYPE;
+import GridCell.GenerationView;
+import GridCell.NeighborTable;
+import XML.CA_TYPE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of looking up the neighbors of every cell of a grid once, which is the inner loop of every automaton. The
+ * result is reported per sweep, so dividing by the number of cells gives the cost of one lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighborBenchmark {
+    private static final int COUNTED_STATE = 0;
+
+    @Param({"SQUARE", "TRIANGLE", "HEXAGON"})
+    public CELL_SHAPE shape;
+
+    @Param({"normal", "toroidal"})
+    public String edgeType;
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private NeighborTable table;
+    private GenerationView generation;
+    private int[] neighbors;
+
+    @Setup
+    public void createTable() {
+        table = new NeighborTable(shape, new Integer[]{-1}, EDGE_TYPE.fromString(edgeType), size);
+        generation = Fixtures.createGrid(CA_TYPE.GAME_OF_LIFE, shape, edgeType, size).getCurrentGeneration();
+        neighbors = new int[table.getMaxNeighbors()];
+    }
+
+    @Benchmark
+    public void getNeighbors(Blackhole blackhole) {
+        for (int index = 0; index < generation.getNumCells(); index++) {
+            int numNeighbors = table.getNeighbors(index, neighbors);
+            blackhole.consume(neighbors[numNeighbors - 1]);
+        }
+    }
+
+    @Benchmark
+    public int countNeighbors() {
+        int total = 0;
+        for (int index = 0; index < generation.getNumCells(); index++) {
+            total += table.countNeighbors(index, generation, COUNTED_STATE);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int forEachNeighbor() {
+        int[] total = new int[1];
+        for (int index = 0; index < generation.getNumCells(); index++) {
+            table.forEachNeighbor(index, generation, (neighbor, state) -> total[0] += state);
+        }
+        return total[0];
+    }
+}
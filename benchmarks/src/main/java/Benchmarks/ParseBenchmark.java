@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import XML.XMLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of parsing and validating the shipped config files. Parsing checks the file against every automaton schema
+ * until one matches, so files of the automata listed last in CA_TYPE take the longest. Run from the repository root.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({
+            "data/automata/life/gospel-glider-gun.xml",
+            "data/automata/fire/fire-random-comp.xml",
+            "data/automata/segregation/segregation-random.xml",
+            "data/automata/predator-prey/predator-prey-tri-01.xml",
+            "data/automata/rps/rps-comp.xml"
+    })
+    public String fixture;
+
+    private XMLParser parser;
+    private File file;
+
+    @Setup
+    public void findFixture() {
+        file = new File(fixture);
+        if (!file.isFile())
+            throw new IllegalStateException("Run the benchmarks from the repository root, missing " + fixture);
+        parser = new XMLParser();
+    }
+
+    @Benchmark
+    public XMLParser parseFile() {
+        parser.parseFile(file);
+        return parser;
+    }
+}
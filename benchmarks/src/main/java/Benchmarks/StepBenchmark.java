@@ -0,0 +1,58 @@
+package Benchmarks;
+
+import GridCell.CELL_SHAPE;
+import GridCell.Grid;
+import XML.CA_TYPE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps per second of every automaton on every cell shape, edge type and size. Each iteration starts again from the
+ * same seeded configuration, so the grid does not drift into a dead or frozen state over a long run. Only the Game of
+ * Life has infinite edges, so those are measured by InfiniteStepBenchmark instead of repeating the normal edge rows of
+ * the other automata.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+    @Param({"GAME_OF_LIFE", "FIRE", "SEGREGATION", "PREDATOR_PREY", "RPS"})
+    public CA_TYPE type;
+
+    @Param({"SQUARE", "TRIANGLE", "HEXAGON"})
+    public CELL_SHAPE shape;
+
+    @Param({"normal", "toroidal"})
+    public String edgeType;
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Grid grid;
+
+    @Setup(Level.Iteration)
+    public void createGrid() {
+        grid = Fixtures.createGrid(type, shape, edgeType, size);
+    }
+
+    @Benchmark
+    public Grid step() {
+        grid.updateCells();
+        return grid;
+    }
+}
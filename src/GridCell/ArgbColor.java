@@ -0,0 +1,51 @@
+package GridCell;
+
+/**
+ * Colors of cell states packed into ints as 0xAARRGGBB, so the simulations do not depend on JavaFX and can run
+ * without a display. The values match the JavaFX colors of the same name.
+ */
+public final class ArgbColor {
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int GREY = 0xFF808080;
+    public static final int RED = 0xFFFF0000;
+    public static final int GREEN = 0xFF008000;
+    public static final int BLUE = 0xFF0000FF;
+    public static final int YELLOW = 0xFFFFFF00;
+    public static final int AQUAMARINE = 0xFF7FFFD4;
+
+    private ArgbColor() {
+    }
+
+    /**
+     * @param argb
+     * @return alpha component between 0 and 255
+     */
+    public static int getAlpha(int argb) {
+        return argb >>> 24;
+    }
+
+    /**
+     * @param argb
+     * @return red component between 0 and 255
+     */
+    public static int getRed(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    /**
+     * @param argb
+     * @return green component between 0 and 255
+     */
+    public static int getGreen(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    /**
+     * @param argb
+     * @return blue component between 0 and 255
+     */
+    public static int getBlue(int argb) {
+        return argb & 0xFF;
+    }
+}
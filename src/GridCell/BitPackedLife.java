@@ -0,0 +1,214 @@
+package GridCell;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Game of Life engine for square cells with the full eight cell Moore neighborhood. Every row is packed into longs,
+ * one bit per cell, so a single word holds 64 cells. The eight neighbor rows of a word are summed with bitwise full
+ * adders into four bit planes of the neighbor count, and the birth and survival rule is applied to all 64 cells at once.
+ * Works with normal and toroidal edges. Every row only reads the current generation, so bands of rows can be stepped
+ * in parallel.
+ */
+public class BitPackedLife implements LifeEngine {
+    private final int size;
+    private final int wordsPerRow;
+    private final boolean toroidal;
+    private final int aliveState;
+    private final int deadState;
+    private final int birthCounts;
+    private final int survivalCounts;
+    private final long lastWordMask;
+    private final ParallelRange parallelRange;
+    private long[] cells;
+    private long[] nextCells;
+
+    /**
+     * Create an engine where every cell is dead
+     * @param size grid is always square so this param specifies 1 side length
+     * @param toroidal whether cells on opposite edges are neighbors
+     * @param aliveState state of a live cell in the grid
+     * @param deadState state of a dead cell in the grid
+     * @param birthCounts bit n is set if a dead cell with n live neighbors comes alive
+     * @param survivalCounts bit n is set if a live cell with n live neighbors stays alive
+     * @param parallelRange splits the rows of a step into bands that run in parallel
+     */
+    public BitPackedLife(int size, boolean toroidal, int aliveState, int deadState, int birthCounts, int survivalCounts,
+                         ParallelRange parallelRange) {
+        this.size = size;
+        this.toroidal = toroidal;
+        this.aliveState = aliveState;
+        this.deadState = deadState;
+        this.birthCounts = birthCounts;
+        this.survivalCounts = survivalCounts;
+        this.parallelRange = parallelRange;
+        wordsPerRow = (size + Long.SIZE - 1) / Long.SIZE;
+        int bitsInLastWord = size - (wordsPerRow - 1)*Long.SIZE;
+        lastWordMask = bitsInLastWord == Long.SIZE ? -1L : (1L << bitsInLastWord) - 1;
+        cells = new long[size*wordsPerRow];
+        nextCells = new long[size*wordsPerRow];
+    }
+
+    @Override
+    public void load(GenerationView generation) {
+        Arrays.fill(cells, 0L);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (generation.getState(generation.getIndex(row, col)) == aliveState)
+                    cells[row*wordsPerRow + col / Long.SIZE] |= 1L << (col % Long.SIZE);
+            }
+        }
+    }
+
+    @Override
+    public void export(StatePlanes window) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                boolean alive = (cells[row*wordsPerRow + col / Long.SIZE] & (1L << (col % Long.SIZE))) != 0;
+                window.setState(window.getIndex(row, col), alive ? aliveState : deadState);
+            }
+        }
+    }
+
+    // a word that is the same as in the last generation is skipped, so a quiet grid costs one XOR per 64 cells
+    @Override
+    public void exportChanges(StatePlanes window) {
+        for (int row = 0; row < size; row++) {
+            int rowStart = row*wordsPerRow;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long changedBits = cells[rowStart + word] ^ nextCells[rowStart + word];
+                while (changedBits != 0) {
+                    int bit = Long.numberOfTrailingZeros(changedBits);
+                    boolean alive = (cells[rowStart + word] & (1L << bit)) != 0;
+                    window.setState(window.getIndex(row, word*Long.SIZE + bit), alive ? aliveState : deadState);
+                    changedBits &= changedBits - 1;
+                }
+            }
+        }
+    }
+
+    // the cells that changed are the bits that differ from the last generation, which is still in nextCells
+    @Override
+    public boolean forEachChangedCell(IntConsumer action) {
+        for (int row = 0; row < size; row++) {
+            int rowStart = row*wordsPerRow;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long changedBits = cells[rowStart + word] ^ nextCells[rowStart + word];
+                while (changedBits != 0) {
+                    action.accept(row*size + word*Long.SIZE + Long.numberOfTrailingZeros(changedBits));
+                    changedBits &= changedBits - 1;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void step() {
+        parallelRange.run(size, size, (band, start, end) -> stepRows(start, end));
+        long[] oldCells = cells;
+        cells = nextCells;
+        nextCells = oldCells;
+    }
+
+    private void stepRows(int start, int end) {
+        for (int row = start; row < end; row++) {
+            int aboveStart = getRowStart(row - 1);
+            int belowStart = getRowStart(row + 1);
+            int rowStart = row*wordsPerRow;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long next = stepWord(aboveStart, rowStart, belowStart, word);
+                nextCells[rowStart + word] = word == wordsPerRow - 1 ? next & lastWordMask : next;
+            }
+        }
+    }
+
+    private long stepWord(int aboveStart, int rowStart, int belowStart, int word) {
+        long n = getWord(aboveStart, word);
+        long nw = getWestNeighbors(aboveStart, word);
+        long ne = getEastNeighbors(aboveStart, word);
+        long w = getWestNeighbors(rowStart, word);
+        long e = getEastNeighbors(rowStart, word);
+        long s = getWord(belowStart, word);
+        long sw = getWestNeighbors(belowStart, word);
+        long se = getEastNeighbors(belowStart, word);
+
+        // first level of full adders: three sums of weight 1 and three carries of weight 2
+        long sum1 = nw ^ n ^ ne;
+        long carry1 = (nw & n) | (ne & (nw ^ n));
+        long sum2 = w ^ e ^ sw;
+        long carry2 = (w & e) | (sw & (w ^ e));
+        long sum3 = s ^ se;
+        long carry3 = s & se;
+
+        // second level: add up the weight 1 sums, then the four weight 2 carries
+        long bit0 = sum1 ^ sum2 ^ sum3;
+        long carry4 = (sum1 & sum2) | (sum3 & (sum1 ^ sum2));
+        long sum5 = carry1 ^ carry2 ^ carry3;
+        long carry5 = (carry1 & carry2) | (carry3 & (carry1 ^ carry2));
+        long bit1 = sum5 ^ carry4;
+        long carry6 = sum5 & carry4;
+        long bit2 = carry5 ^ carry6;
+        long bit3 = carry5 & carry6;
+
+        long alive = getWord(rowStart, word);
+        long born = 0;
+        long survived = 0;
+        for (int count = 0; count <= 8; count++) {
+            boolean birth = (birthCounts & (1 << count)) != 0;
+            boolean survival = (survivalCounts & (1 << count)) != 0;
+            if (!birth && !survival)
+                continue;
+            long hasCount = matchBit(bit0, count & 1) & matchBit(bit1, count & 2) & matchBit(bit2, count & 4) & matchBit(bit3, count & 8);
+            if (birth)
+                born |= hasCount;
+            if (survival)
+                survived |= hasCount;
+        }
+        return (~alive & born) | (alive & survived);
+    }
+
+    private static long matchBit(long bitPlane, int bitSet) {
+        return bitSet != 0 ? bitPlane : ~bitPlane;
+    }
+
+    // start of the row in the cell array, or -1 for a row past a normal edge
+    private int getRowStart(int row) {
+        if (row < 0 || row >= size) {
+            if (!toroidal)
+                return -1;
+            row = Math.floorMod(row, size);
+        }
+        return row*wordsPerRow;
+    }
+
+    private long getWord(int rowStart, int word) {
+        if (rowStart < 0 || word < 0 || word >= wordsPerRow)
+            return 0L;
+        return cells[rowStart + word];
+    }
+
+    // bit c holds the cell at column c-1
+    private long getWestNeighbors(int rowStart, int word) {
+        if (rowStart < 0)
+            return 0L;
+        long shifted = (getWord(rowStart, word) << 1) | (getWord(rowStart, word - 1) >>> (Long.SIZE - 1));
+        if (word == 0 && toroidal)
+            shifted |= getBit(rowStart, size - 1);
+        return shifted;
+    }
+
+    // bit c holds the cell at column c+1
+    private long getEastNeighbors(int rowStart, int word) {
+        if (rowStart < 0)
+            return 0L;
+        long shifted = (getWord(rowStart, word) >>> 1) | (getWord(rowStart, word + 1) << (Long.SIZE - 1));
+        if (word == wordsPerRow - 1 && toroidal)
+            shifted |= getBit(rowStart, 0) << ((size - 1) % Long.SIZE);
+        return shifted;
+    }
+
+    private long getBit(int rowStart, int col) {
+        return (cells[rowStart + col / Long.SIZE] >>> (col % Long.SIZE)) & 1L;
+    }
+}
@@ -1,45 +1,151 @@
 package GridCell;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public enum CELL_SHAPE {
     SQUARE(
-          new Integer[]{-1, -1, 0, 1, 1, 1, 0, -1},
-          new Integer[]{0, 1, 1, 1, 0, -1, -1, -1},
+          new int[]{-1, -1, 0, 1, 1, 1, 0, -1},
+          new int[]{0, 1, 1, 1, 0, -1, -1, -1},
           8
           ) {
         @Override
         public String toString() {
             return "square";
         }
+
+        @Override
+        int[] getFullDelta(int parityClass, int[] fullDelta) {
+            return fullDelta;
+        }
+
+        @Override
+        public int getCellAt(double x, double y, int size) {
+            int row = (int) Math.floor(y);
+            int col = (int) Math.floor(x);
+            return isInGrid(row, col, size) ? row*size + col : -1;
+        }
+
+        @Override
+        public double[] getBounds(int size) {
+            return new double[]{0, 0, size, size};
+        }
     },
     TRIANGLE(
-          new Integer[]{-1, -1, -1, 0, 0, 1, 1,  1,  0,  0, -1, -1},
-          new Integer[]{ 0,  1,  2, 2, 1, 1, 0, -1, -1, -2, -2, -1},
+          new int[]{-1, -1, -1, 0, 0, 1, 1,  1,  0,  0, -1, -1},
+          new int[]{ 0,  1,  2, 2, 1, 1, 0, -1, -1, -2, -2, -1},
           12
           ) {
         @Override
         public String toString() {
             return "triangle";
         }
+
+        @Override
+        public int getNumParityClasses() {
+            return 2;
+        }
+
+        // the deltas above are for downward pointing triangles, upward pointing ones see the mirror image
+        @Override
+        public int getParityClass(int row, int col) {
+            return Math.floorMod(row + col, 2);
+        }
+
+        @Override
+        int[] getFullDelta(int parityClass, int[] fullDelta) {
+            if (parityClass == 0)
+                return fullDelta;
+            int[] flipped = new int[fullDelta.length];
+            for (int k=0; k<fullDelta.length; k++) {
+                flipped[k] = -fullDelta[k];
+            }
+            return flipped;
+        }
+
+        // each triangle is one cell wide and 3/4 of a cell tall, and overlaps half of the triangles on either side
+        @Override
+        public int getCellAt(double x, double y, int size) {
+            int row = (int) Math.floor(y/TRIANGLE_HEIGHT);
+            int lastCol = (int) Math.floor(2*x);
+            for (int col = lastCol; col >= lastCol - 1; col--) {
+                if (isInGrid(row, col, size) && containsPoint(row, col, x - col*0.5, y - row*TRIANGLE_HEIGHT))
+                    return row*size + col;
+            }
+            return -1;
+        }
+
+        // downward pointing triangles are widest at the top, upward pointing ones at the bottom
+        private boolean containsPoint(int row, int col, double u, double v) {
+            double halfWidth = getParityClass(row, col) == 0 ? 0.5*(1 - v/TRIANGLE_HEIGHT) : 0.5*v/TRIANGLE_HEIGHT;
+            return Math.abs(u - 0.5) <= halfWidth;
+        }
+
+        @Override
+        public double[] getBounds(int size) {
+            return new double[]{0, 0, (size - 1)*0.5 + 1, size*TRIANGLE_HEIGHT};
+        }
     },
     HEXAGON(
-//                       U UR  R DR  D DL  L UL
-          new Integer[]{-1,-1, 0, 1, 1, 1, 0,-1},
-          new Integer[]{ 0, 1, 1, 1, 0,-1,-1,-1},
+//                   U UR  R DR  D DL  L UL
+          new int[]{-1,-1, 0, 1, 1, 1, 0,-1},
+          new int[]{ 0, 1, 1, 1, 0,-1,-1,-1},
           6
           ) {
         @Override
         public String toString() {
             return "hexagon";
         }
+
+        @Override
+        public int getNumParityClasses() {
+            return 2;
+        }
+
+        // even columns are drawn half a cell higher than odd columns
+        @Override
+        public int getParityClass(int row, int col) {
+            return Math.floorMod(col, 2);
+        }
+
+        @Override
+        int[] getFullDelta(int parityClass, int[] fullDelta) {
+            if (parityClass == 0)
+                return copyWithoutIndices(3, 5, fullDelta);
+            return copyWithoutIndices(1, 7, fullDelta);
+        }
+
+        // each hexagon is one cell wide and tall, and columns are 2/3 of a cell apart so their slanted sides interlock
+        @Override
+        public int getCellAt(double x, double y, int size) {
+            int found = -1;
+            int lastCol = (int) Math.floor(x/HEXAGON_SPACING);
+            for (int col = lastCol; col >= lastCol - 1; col--) {
+                double top = getParityClass(0, col) == 0 ? -0.5 : 0;
+                int row = (int) Math.floor(y - top);
+                if (isInGrid(row, col, size) && containsPoint(x - col*HEXAGON_SPACING, y - top - row))
+                    found = Math.max(found, row*size + col);
+            }
+            return found;
+        }
+
+        private boolean containsPoint(double u, double v) {
+            double halfWidth = 1.0/6 + (1 - 2*Math.abs(v - 0.5))/3;
+            return Math.abs(u - 0.5) <= halfWidth;
+        }
+
+        @Override
+        public double[] getBounds(int size) {
+            return new double[]{0, -0.5, (size - 1)*HEXAGON_SPACING + 1, size};
+        }
     };
 
-    private Integer[] myDeltaR;
-    private Integer[] myDeltaC;
-    private int myMaxNeighbors;
-    CELL_SHAPE(Integer[] deltaR, Integer[] deltaC, int maxNeighbors) {
+    private static final double TRIANGLE_HEIGHT = 0.75;
+    private static final double HEXAGON_SPACING = 2.0/3;
+
+    private final int[] myDeltaR;
+    private final int[] myDeltaC;
+    private final int myMaxNeighbors;
+    CELL_SHAPE(int[] deltaR, int[] deltaC, int maxNeighbors) {
         myDeltaR = deltaR;
         myDeltaC = deltaC;
         myMaxNeighbors = maxNeighbors;
@@ -49,67 +155,95 @@ public enum CELL_SHAPE {
      * Lets the XML parser know how to check for errors for a selectedNeighbors int array
      * @return max number of neighbors
      */
-    public int getMaxNumNeighbors() { return myDeltaC.length; }
+    public int getMaxNumNeighbors() { return myMaxNeighbors; }
+
+    /**
+     * Cells of the same shape can have different neighborhoods depending on their position (triangles alternate
+     * between pointing up and down). Cells in the same parity class have the same neighbor deltas.
+     * @return number of parity classes for this shape
+     */
+    public int getNumParityClasses() { return 1; }
 
     /**
-     * Gets the ordered delta values to add to the current column to reach
-     * the specified neighbors in clockwise order.
-     * Assumes
      * @param row
      * @param col
-     * @param selectedNeighbors
-     * @return delta column values in an Integer array
+     * @return parity class of the cell at row, col
      */
-    public Integer[] getDeltaC(int row, int col, Integer[] selectedNeighbors) {
-        return getDelta(row, col, selectedNeighbors, myDeltaC);
+    public int getParityClass(int row, int col) { return 0; }
 
+    /**
+     * Gets the ordered delta values to add to the current column to reach
+     * the specified neighbors in clockwise order.
+     * Returns a new array on every call, so it should only be used to build a NeighborTable.
+     * @param parityClass
+     * @param selectedNeighbors
+     * @return delta column values in an int array
+     */
+    public int[] getDeltaC(int parityClass, Integer[] selectedNeighbors) {
+        return getDelta(parityClass, selectedNeighbors, myDeltaC);
     }
 
     /**
      * Gets the ordered delta values to add to the current row to reach
      * the specified neighbors in clockwise order.
-     * @param row
-     * @param col
+     * Returns a new array on every call, so it should only be used to build a NeighborTable.
+     * @param parityClass
      * @param selectedNeighbors
-     * @return delta row values in an Integer array
+     * @return delta row values in an int array
      */
-    public Integer[] getDeltaR(int row, int col, Integer[] selectedNeighbors) {
-        return getDelta(row, col, selectedNeighbors, myDeltaR);
+    public int[] getDeltaR(int parityClass, Integer[] selectedNeighbors) {
+        return getDelta(parityClass, selectedNeighbors, myDeltaR);
     }
 
-    private Integer[] getDelta(int row, int col, Integer[] selectedNeighbors, Integer[] fullDelta) {
-        if (this.equals(CELL_SHAPE.TRIANGLE) && (row + col) % 2 == 0)
-            flipSign(fullDelta);
-        if (this.equals(CELL_SHAPE.HEXAGON)){
-            if (col % 2 == 0){
-                fullDelta = copyWithoutIndices(3,5,fullDelta);
-            }else{
-                fullDelta = copyWithoutIndices(1,7,fullDelta);
-            }
-        }
+    /**
+     * @param parityClass
+     * @param fullDelta deltas for every neighbor of a square-like cell
+     * @return deltas for every possible neighbor of a cell in the parity class. May be the shared enum array, so it
+     *         must never be changed.
+     */
+    abstract int[] getFullDelta(int parityClass, int[] fullDelta);
+
+    /**
+     * Find the cell drawn at a point of the display. Where cells overlap, the one drawn last (in row-major order) is
+     * on top.
+     * @param x distance from the left of the grid, in cells
+     * @param y distance from the top of the grid, in cells
+     * @param size side length of the grid
+     * @return flat index of the cell, or -1 if no cell covers the point
+     */
+    public abstract int getCellAt(double x, double y, int size);
+
+    /**
+     * Get the area the cells of a grid cover on the display, in cells from the top left corner of the grid. Hexagons
+     * in even columns stick out half a cell above it.
+     * @param size side length of the grid
+     * @return left, top, right and bottom of the area
+     */
+    public abstract double[] getBounds(int size);
+
+    private static boolean isInGrid(int row, int col, int size) {
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+
+    private int[] getDelta(int parityClass, Integer[] selectedNeighbors, int[] allDeltas) {
+        int[] fullDelta = getFullDelta(parityClass, allDeltas).clone();
         // [-1] means include max possible neighbors
         if (selectedNeighbors.length == 1 && selectedNeighbors[0] == -1)
             return fullDelta;
 
-        Arrays.sort(selectedNeighbors); // in case the selected neighbors weren't in increasing order
-        ArrayList<Integer> newDelta = new ArrayList<>();
-        for (int index : selectedNeighbors) {
-            newDelta.add(fullDelta[index]);
-        }
-        return newDelta.toArray(new Integer[0]);
-    }
-
-    private void flipSign(Integer[] array) {
-        for (int k=0; k<array.length; k++) {
-            array[k] *= -1;
+        Integer[] sortedNeighbors = selectedNeighbors.clone();
+        Arrays.sort(sortedNeighbors); // in case the selected neighbors weren't in increasing order
+        int[] newDelta = new int[sortedNeighbors.length];
+        for (int k=0; k<sortedNeighbors.length; k++) {
+            newDelta[k] = fullDelta[sortedNeighbors[k]];
         }
+        return newDelta;
     }
 
-    private Integer[] copyWithoutIndices(int ind1, int ind2, Integer[] array){
-        Integer[] result = new Integer[array.length-2];
+    private static int[] copyWithoutIndices(int ind1, int ind2, int[] array){
+        int[] result = new int[array.length-2];
         int difference = 0;
         for (int i = 0; i < array.length; i++){
-            //System.out.println("Index: "+index);
             if (!(i == ind1 || i == ind2)){
                 result[i-difference] = array[i];
             }else{
@@ -0,0 +1,339 @@
+package GridCell;
+
+import java.util.Map;
+
+/**
+ * Draws a generation into a buffer of ARGB pixels, so the display can show a grid of any size as a single image
+ * instead of one shape per cell. The buffer covers the window of a Viewport, and the cell drawn at the center of every
+ * pixel is looked up once, when the raster is created, from the layout math of CELL_SHAPE. This rasterizes squares,
+ * triangles and hexagons alike, and cells outside the window are never looked at, so a frame is one palette lookup per
+ * pixel no matter how many cells the grid has or how far it is zoomed in. Cell borders are a mask of the pixels at the
+ * edge of a cell, drawn over the cells when they are turned on. Pixels outside every cell are left transparent.
+ *
+ * The pixels are also grouped by the DirtyTiles tile of their cell, so when only a few of the tiles in the window
+ * changed since the last frame just their pixels are redrawn, and the display only has to upload the rectangle around
+ * them. When a pixel covers two or more cells, the display should draw from the level of a ColorPyramid given by
+ * getDetailLevel() instead, so every pixel shows the average of the cells under it.
+ */
+public class CellRaster {
+    private static final int BACKGROUND = 0;
+    private static final int BORDER = ArgbColor.BLACK;
+    private static final int NUM_STATES = 1 << Byte.SIZE;
+    private static final double FULL_REDRAW_FRACTION = 0.25;
+
+    private final CELL_SHAPE shape;
+    private final int size;
+    private final int width;
+    private final int height;
+    private final double left;
+    private final double top;
+    private final double scale;
+    private final int[] pixelCells;
+    private final boolean[] borderPixels;
+    private final int[] pixels;
+    private final int[] palette = new int[NUM_STATES];
+    private final int[] nextPalette = new int[NUM_STATES];
+    private int[] tilePixelStart;
+    private int[] tilePixels;
+    private int[] tileBounds;
+    private int[] tileIds;
+    private int[] visibleTiles;
+    private boolean drawn;
+    private boolean drawnBorders;
+    private int dirtyLeft;
+    private int dirtyTop;
+    private int dirtyRight;
+    private int dirtyBottom;
+
+    /**
+     * Map every pixel of a grid drawn whole to the cell drawn on it
+     * @param shape shape of every cell
+     * @param size side length of the grid
+     * @param cellSize side length of a cell, in pixels
+     */
+    public CellRaster(CELL_SHAPE shape, int size, double cellSize) {
+        this(new Viewport(shape, size, cellSize));
+    }
+
+    /**
+     * Map every pixel of the window to the cell drawn on it. The raster keeps the window as it is now, and has to be
+     * made again once the viewport is zoomed or panned.
+     * @param viewport
+     */
+    public CellRaster(Viewport viewport) {
+        shape = viewport.getShape();
+        size = viewport.getSize();
+        width = viewport.getWidth();
+        height = viewport.getHeight();
+        left = viewport.getLeft();
+        top = viewport.getTop();
+        scale = viewport.getScale();
+        pixelCells = new int[width*height];
+        borderPixels = new boolean[width*height];
+        pixels = new int[width*height];
+        mapPixels();
+        findBorders();
+        groupPixelsByTile(new DirtyTiles(size));
+    }
+
+    private void mapPixels() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixelCells[y*width + x] = shape.getCellAt(left + (x + 0.5)/scale, top + (y + 0.5)/scale, size);
+            }
+        }
+    }
+
+    // the last pixel of a cell before the next cell along a row or column, and every pixel of a cell next to the
+    // background, so neighboring cells share a one pixel border
+    private void findBorders() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = y*width + x;
+                int cell = pixelCells[pixel];
+                if (cell < 0)
+                    continue;
+                borderPixels[pixel] = getCell(x + 1, y) != cell || getCell(x, y + 1) != cell
+                        || getCell(x - 1, y) < 0 || getCell(x, y - 1) < 0;
+            }
+        }
+    }
+
+    // counting sort of the pixels by tile, which also finds the rectangle each tile covers. Only the block of tiles
+    // around the cells in the window is numbered, so a window onto a small part of a large grid does not pay for the
+    // tiles it cannot see.
+    private void groupPixelsByTile(DirtyTiles tiling) {
+        int firstRow = Integer.MAX_VALUE;
+        int firstCol = Integer.MAX_VALUE;
+        int lastRow = -1;
+        int lastCol = -1;
+        for (int cell : pixelCells) {
+            if (cell < 0)
+                continue;
+            firstRow = Math.min(firstRow, cell / size / DirtyTiles.TILE_SIZE);
+            lastRow = Math.max(lastRow, cell / size / DirtyTiles.TILE_SIZE);
+            firstCol = Math.min(firstCol, cell % size / DirtyTiles.TILE_SIZE);
+            lastCol = Math.max(lastCol, cell % size / DirtyTiles.TILE_SIZE);
+        }
+        int numCols = lastCol - firstCol + 1;
+        int numTiles = lastRow < 0 ? 0 : (lastRow - firstRow + 1)*numCols;
+        int[] localTiles = new int[pixelCells.length];
+        tilePixelStart = new int[numTiles + 1];
+        for (int pixel = 0; pixel < pixelCells.length; pixel++) {
+            int cell = pixelCells[pixel];
+            if (cell < 0)
+                continue;
+            localTiles[pixel] = (cell / size / DirtyTiles.TILE_SIZE - firstRow)*numCols
+                    + cell % size / DirtyTiles.TILE_SIZE - firstCol;
+            tilePixelStart[localTiles[pixel] + 1]++;
+        }
+        int numVisible = 0;
+        for (int tile = 0; tile < numTiles; tile++) {
+            if (tilePixelStart[tile + 1] > 0)
+                numVisible++;
+            tilePixelStart[tile + 1] += tilePixelStart[tile];
+        }
+        tilePixels = new int[tilePixelStart[numTiles]];
+        tileBounds = new int[4*numTiles];
+        tileIds = new int[numTiles];
+        visibleTiles = new int[numVisible];
+        int[] next = tilePixelStart.clone();
+        for (int pixel = 0; pixel < pixelCells.length; pixel++) {
+            if (pixelCells[pixel] < 0)
+                continue;
+            int tile = localTiles[pixel];
+            if (next[tile] == tilePixelStart[tile]) {
+                tileIds[tile] = tiling.getTile(pixelCells[pixel]);
+                tileBounds[4*tile] = width;
+                tileBounds[4*tile + 1] = height;
+            }
+            tilePixels[next[tile]++] = pixel;
+            int x = pixel % width;
+            int y = pixel / width;
+            tileBounds[4*tile] = Math.min(tileBounds[4*tile], x);
+            tileBounds[4*tile + 1] = Math.min(tileBounds[4*tile + 1], y);
+            tileBounds[4*tile + 2] = Math.max(tileBounds[4*tile + 2], x + 1);
+            tileBounds[4*tile + 3] = Math.max(tileBounds[4*tile + 3], y + 1);
+        }
+        numVisible = 0;
+        for (int tile = 0; tile < numTiles; tile++) {
+            if (tilePixelStart[tile + 1] > tilePixelStart[tile])
+                visibleTiles[numVisible++] = tile;
+        }
+    }
+
+    private int getCell(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            return -1;
+        return pixelCells[y*width + x];
+    }
+
+    /**
+     * Whether the raster was made for this grid and window, or a new one has to be made
+     * @param viewport
+     * @return true if the raster can draw the window
+     */
+    public boolean fits(Viewport viewport) {
+        return shape == viewport.getShape() && size == viewport.getSize() && width == viewport.getWidth()
+                && height == viewport.getHeight() && left == viewport.getLeft() && top == viewport.getTop()
+                && scale == viewport.getScale();
+    }
+
+    /**
+     * Draw a whole generation into the pixel buffer
+     * @param generation
+     * @param stateColors color of each state as 0xAARRGGBB. States without a color are left transparent.
+     * @param borders whether to draw cell borders
+     */
+    public void render(GenerationView generation, Map<Integer, Integer> stateColors, boolean borders) {
+        render(generation, stateColors, borders, null);
+    }
+
+    /**
+     * Draw the tiles in the window that changed since the last frame into the pixel buffer. Everything is redrawn
+     * instead if this is the first frame, the colors or borders changed, or too many of the tiles in the window
+     * changed for redrawing them one by one to pay off.
+     * @param generation
+     * @param stateColors color of each state as 0xAARRGGBB. States without a color are left transparent.
+     * @param borders whether to draw cell borders
+     * @param dirty tiles that changed since the last frame, or null if unknown
+     */
+    public void render(GenerationView generation, Map<Integer, Integer> stateColors, boolean borders, DirtyTiles dirty) {
+        boolean paletteChanged = setPalette(stateColors);
+        if (!drawn || paletteChanged || borders != drawnBorders || dirty == null || dirty.getSize() != size
+                || dirty.isAll() || countDirtyTiles(dirty) > FULL_REDRAW_FRACTION*visibleTiles.length) {
+            for (int pixel = 0; pixel < pixels.length; pixel++) {
+                pixels[pixel] = getColor(generation, borders, pixel);
+            }
+            setDirtyRectangle(0, 0, width, height);
+            drawn = true;
+            drawnBorders = borders;
+            return;
+        }
+        setDirtyRectangle(width, height, 0, 0);
+        for (int tile : visibleTiles) {
+            if (!dirty.isDirty(tileIds[tile]))
+                continue;
+            for (int k = tilePixelStart[tile]; k < tilePixelStart[tile + 1]; k++) {
+                pixels[tilePixels[k]] = getColor(generation, borders, tilePixels[k]);
+            }
+            dirtyLeft = Math.min(dirtyLeft, tileBounds[4*tile]);
+            dirtyTop = Math.min(dirtyTop, tileBounds[4*tile + 1]);
+            dirtyRight = Math.max(dirtyRight, tileBounds[4*tile + 2]);
+            dirtyBottom = Math.max(dirtyBottom, tileBounds[4*tile + 3]);
+        }
+    }
+
+    /**
+     * Draw every pixel from a level of a pyramid, as the average color of the block of cells under it. Borders are
+     * never drawn, since every pixel would be a border. The next frame drawn cell by cell redraws everything.
+     * @param pyramid pyramid of the generation to draw
+     * @param level level of the pyramid, usually getDetailLevel()
+     */
+    public void render(ColorPyramid pyramid, int level) {
+        for (int pixel = 0; pixel < pixels.length; pixel++) {
+            int cell = pixelCells[pixel];
+            pixels[pixel] = cell < 0 ? BACKGROUND : pyramid.getColor(level, cell);
+        }
+        setDirtyRectangle(0, 0, width, height);
+        drawn = false;
+    }
+
+    /**
+     * @return largest level of a ColorPyramid whose blocks are no wider than a pixel, 0 if cells are wider than half
+     * a pixel and should be drawn one by one
+     */
+    public int getDetailLevel() {
+        int level = 0;
+        while ((2 << level)*scale <= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    private int countDirtyTiles(DirtyTiles dirty) {
+        int count = 0;
+        for (int tile : visibleTiles) {
+            if (dirty.isDirty(tileIds[tile]))
+                count++;
+        }
+        return count;
+    }
+
+    private int getColor(GenerationView generation, boolean borders, int pixel) {
+        int cell = pixelCells[pixel];
+        if (cell < 0)
+            return BACKGROUND;
+        if (borders && borderPixels[pixel])
+            return BORDER;
+        return palette[generation.getState(cell) & (NUM_STATES - 1)];
+    }
+
+    private void setDirtyRectangle(int left, int top, int right, int bottom) {
+        dirtyLeft = left;
+        dirtyTop = top;
+        dirtyRight = right;
+        dirtyBottom = bottom;
+    }
+
+    // returns whether any color is different from the last frame
+    private boolean setPalette(Map<Integer, Integer> stateColors) {
+        boolean changed = false;
+        for (int state = 0; state < NUM_STATES; state++) {
+            Integer color = stateColors.get(state);
+            nextPalette[state] = color == null ? BACKGROUND : color;
+            changed |= nextPalette[state] != palette[state];
+        }
+        System.arraycopy(nextPalette, 0, palette, 0, NUM_STATES);
+        return changed;
+    }
+
+    /**
+     * @return left of the pixels that changed during the last frame
+     */
+    public int getDirtyX() {
+        return dirtyLeft;
+    }
+
+    /**
+     * @return top of the pixels that changed during the last frame
+     */
+    public int getDirtyY() {
+        return dirtyTop;
+    }
+
+    /**
+     * @return width of the pixels that changed during the last frame, 0 if none did
+     */
+    public int getDirtyWidth() {
+        return Math.max(0, dirtyRight - dirtyLeft);
+    }
+
+    /**
+     * @return height of the pixels that changed during the last frame, 0 if none did
+     */
+    public int getDirtyHeight() {
+        return Math.max(0, dirtyBottom - dirtyTop);
+    }
+
+    /**
+     * @return pixels of the last frame, row by row, as 0xAARRGGBB
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return width of the buffer in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the buffer in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,286 @@
+package GridCell;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Sparse storage for the states of an unbounded grid. The plane is split into CHUNK_SIZE x CHUNK_SIZE tiles that are
+ * kept in a hash map keyed by their chunk coordinates. Every cell outside of a stored tile is in the background state,
+ * so a tile is only allocated once some cell in it leaves the background state and is freed again when all of its
+ * cells return to it. Memory therefore scales with the area that is alive rather than with the bounding box of
+ * everything that has ever happened.
+ */
+public class ChunkedPlane {
+    public static final int CHUNK_SIZE = 64;
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int LEFT = 4;
+    private static final int RIGHT = 8;
+
+    private final byte background;
+    private final CELL_SHAPE shape;
+    private final int reach;
+    private final int paddedSize;
+    private final int[][] paddedOffsets;
+    private final byte[] padded;
+    private HashMap<Long, byte[]> chunks = new HashMap<>();
+    private HashMap<Long, byte[]> nextChunks = new HashMap<>();
+    private final ArrayDeque<byte[]> freeChunks = new ArrayDeque<>();
+    private final HashSet<Long> candidates = new HashSet<>();
+
+    /**
+     * Create an empty plane where every cell is in the background state
+     * @param background state of every cell that has not been set. Must be stable: a background cell with only
+     *                   background neighbors has to stay in the background state.
+     * @param shape shape of every cell
+     * @param neighborConfig selected neighbors, or [-1] for every possible neighbor
+     */
+    public ChunkedPlane(int background, CELL_SHAPE shape, Integer[] neighborConfig) {
+        this.background = (byte) background;
+        this.shape = shape;
+        int numClasses = shape.getNumParityClasses();
+        int[][] rowDeltas = new int[numClasses][];
+        int[][] colDeltas = new int[numClasses][];
+        int farthest = 0;
+        for (int parity = 0; parity < numClasses; parity++) {
+            rowDeltas[parity] = shape.getDeltaR(parity, neighborConfig);
+            colDeltas[parity] = shape.getDeltaC(parity, neighborConfig);
+            for (int k = 0; k < rowDeltas[parity].length; k++) {
+                farthest = Math.max(farthest, Math.max(Math.abs(rowDeltas[parity][k]), Math.abs(colDeltas[parity][k])));
+            }
+        }
+        reach = farthest;
+        paddedSize = CHUNK_SIZE + 2*reach;
+        paddedOffsets = new int[numClasses][];
+        for (int parity = 0; parity < numClasses; parity++) {
+            paddedOffsets[parity] = new int[rowDeltas[parity].length];
+            for (int k = 0; k < paddedOffsets[parity].length; k++) {
+                paddedOffsets[parity][k] = rowDeltas[parity][k]*paddedSize + colDeltas[parity][k];
+            }
+        }
+        padded = new byte[paddedSize*paddedSize];
+    }
+
+    /**
+     * Return state of the cell at row, col. Rows and columns can be any int, including negative ones.
+     * @param row
+     * @param col
+     * @return
+     */
+    public int getState(int row, int col) {
+        byte[] chunk = chunks.get(getKey(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT));
+        if (chunk == null)
+            return background;
+        return chunk[(row & CHUNK_MASK)*CHUNK_SIZE + (col & CHUNK_MASK)];
+    }
+
+    /**
+     * Set state of the cell at row, col, allocating its chunk if needed
+     * @param row
+     * @param col
+     * @param state
+     */
+    public void setState(int row, int col, int state) {
+        long key = getKey(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        byte[] chunk = chunks.get(key);
+        if (chunk == null) {
+            if (state == background)
+                return;
+            chunk = allocateChunk();
+            chunks.put(key, chunk);
+        }
+        chunk[(row & CHUNK_MASK)*CHUNK_SIZE + (col & CHUNK_MASK)] = (byte) state;
+        if (state == background && isBackground(chunk))
+            freeChunk(chunks.remove(key));
+    }
+
+    /**
+     * Copy a square window of a finite grid into the plane, with the window's top left cell at row 0, col 0. Every
+     * other cell of the plane is reset to the background state.
+     * @param generation
+     */
+    public void load(GenerationView generation) {
+        for (byte[] chunk : chunks.values()) {
+            freeChunk(chunk);
+        }
+        chunks.clear();
+        int size = generation.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                setState(row, col, generation.getState(generation.getIndex(row, col)));
+            }
+        }
+    }
+
+    /**
+     * Copy the window of the plane with its top left cell at row 0, col 0 into finite planes of the window's size
+     * @param window
+     */
+    void export(StatePlanes window) {
+        int size = window.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                window.setState(window.getIndex(row, col), getState(row, col));
+            }
+        }
+    }
+
+    /**
+     * Compute the next generation of every cell that could change. Only stored chunks and the chunks bordering them
+     * are evaluated, and chunks of the new generation that end up entirely in the background state are not stored.
+     * @param rule
+     * @param countedState state whose neighbors are counted and passed to the rule
+     */
+    public void step(TotalisticRule rule, int countedState) {
+        candidates.clear();
+        for (Map.Entry<Long, byte[]> entry : chunks.entrySet()) {
+            long key = entry.getKey();
+            int activeBorders = getActiveBorders(entry.getValue());
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (isBorderActive(activeBorders, TOP, BOTTOM, dr) && isBorderActive(activeBorders, LEFT, RIGHT, dc))
+                        candidates.add(getKey(getChunkRow(key) + dr, getChunkCol(key) + dc));
+                }
+            }
+        }
+        for (long key : candidates) {
+            byte[] next = stepChunk(getChunkRow(key), getChunkCol(key), rule, countedState);
+            if (next != null)
+                nextChunks.put(key, next);
+        }
+        for (byte[] chunk : chunks.values()) {
+            freeChunk(chunk);
+        }
+        chunks.clear();
+        HashMap<Long, byte[]> oldChunks = chunks;
+        chunks = nextChunks;
+        nextChunks = oldChunks;
+    }
+
+    private byte[] stepChunk(int chunkRow, int chunkCol, TotalisticRule rule, int countedState) {
+        gatherPadded(chunkRow, chunkCol);
+        byte[] next = null;
+        int firstRow = chunkRow*CHUNK_SIZE;
+        int firstCol = chunkCol*CHUNK_SIZE;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            for (int col = 0; col < CHUNK_SIZE; col++) {
+                int center = (row + reach)*paddedSize + col + reach;
+                int[] cellOffsets = paddedOffsets.length == 1 ? paddedOffsets[0] : paddedOffsets[shape.getParityClass(firstRow + row, firstCol + col)];
+                int count = 0;
+                for (int offset : cellOffsets) {
+                    if (padded[center + offset] == countedState)
+                        count++;
+                }
+                int state = rule.getNextState(padded[center], count);
+                if (state != background && next == null)
+                    next = allocateChunk();
+                if (next != null)
+                    next[row*CHUNK_SIZE + col] = (byte) state;
+            }
+        }
+        return next;
+    }
+
+    // a neighboring chunk only needs to be evaluated if some cell within reach of the border it shares is not background
+    private int getActiveBorders(byte[] chunk) {
+        int activeBorders = 0;
+        for (int k = 0; k < CHUNK_SIZE; k++) {
+            for (int depth = 0; depth < reach; depth++) {
+                if (chunk[depth*CHUNK_SIZE + k] != background)
+                    activeBorders |= TOP;
+                if (chunk[(CHUNK_SIZE - 1 - depth)*CHUNK_SIZE + k] != background)
+                    activeBorders |= BOTTOM;
+                if (chunk[k*CHUNK_SIZE + depth] != background)
+                    activeBorders |= LEFT;
+                if (chunk[k*CHUNK_SIZE + CHUNK_SIZE - 1 - depth] != background)
+                    activeBorders |= RIGHT;
+            }
+        }
+        return activeBorders;
+    }
+
+    private static boolean isBorderActive(int activeBorders, int lowBorder, int highBorder, int delta) {
+        if (delta < 0)
+            return (activeBorders & lowBorder) != 0;
+        if (delta > 0)
+            return (activeBorders & highBorder) != 0;
+        return true;
+    }
+
+    // copies the chunk and a border of width reach taken from the eight chunks around it into the padded buffer
+    private void gatherPadded(int chunkRow, int chunkCol) {
+        for (int row = 0; row < paddedSize; row++) {
+            int globalRow = chunkRow*CHUNK_SIZE + row - reach;
+            int col = 0;
+            while (col < paddedSize) {
+                int globalCol = chunkCol*CHUNK_SIZE + col - reach;
+                int run = Math.min(paddedSize - col, CHUNK_SIZE - (globalCol & CHUNK_MASK));
+                byte[] source = chunks.get(getKey(globalRow >> CHUNK_SHIFT, globalCol >> CHUNK_SHIFT));
+                int destination = row*paddedSize + col;
+                if (source == null)
+                    Arrays.fill(padded, destination, destination + run, background);
+                else
+                    System.arraycopy(source, (globalRow & CHUNK_MASK)*CHUNK_SIZE + (globalCol & CHUNK_MASK), padded, destination, run);
+                col += run;
+            }
+        }
+    }
+
+    private boolean isBackground(byte[] chunk) {
+        for (byte state : chunk) {
+            if (state != background)
+                return false;
+        }
+        return true;
+    }
+
+    private byte[] allocateChunk() {
+        byte[] chunk = freeChunks.poll();
+        if (chunk == null)
+            chunk = new byte[CHUNK_SIZE*CHUNK_SIZE];
+        Arrays.fill(chunk, background);
+        return chunk;
+    }
+
+    private void freeChunk(byte[] chunk) {
+        freeChunks.push(chunk);
+    }
+
+    /**
+     * @return number of chunks currently allocated
+     */
+    public int getNumChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * @return number of cells that are not in the background state
+     */
+    public long getPopulation() {
+        long population = 0;
+        for (byte[] chunk : chunks.values()) {
+            for (byte state : chunk) {
+                if (state != background)
+                    population++;
+            }
+        }
+        return population;
+    }
+
+    private static long getKey(int chunkRow, int chunkCol) {
+        return ((long) chunkRow << 32) | (chunkCol & 0xffffffffL);
+    }
+
+    private static int getChunkRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int getChunkCol(long key) {
+        return (int) key;
+    }
+}
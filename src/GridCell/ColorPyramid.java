@@ -0,0 +1,153 @@
+package GridCell;
+
+import java.util.Map;
+
+/**
+ * Mipmap of the colors of a grid, for drawing it when a pixel covers many cells. Level k holds the average color of
+ * every block of 2^k by 2^k cells, weighted by the number of cells each part of the block covers, so a zoomed out
+ * display can draw a pixel from the block under it instead of sampling a single cell, which aliases badly and still
+ * needs every cell to be up to date. Each level is made from the four blocks below it.
+ *
+ * Blocks of the DirtyTiles tile size line up with the tiles, so after a step only the blocks inside the tiles that
+ * changed and the blocks above them are averaged again. The whole pyramid is only rebuilt when the colors change or
+ * the changes since the last update are not known.
+ */
+public class ColorPyramid {
+    private static final int NUM_STATES = 1 << Byte.SIZE;
+    private static final int TILE_LEVEL = Integer.numberOfTrailingZeros(DirtyTiles.TILE_SIZE);
+
+    private final int size;
+    private final int numLevels;
+    private final int[] sides;
+    private final int[][] colors;
+    private final int[] palette = new int[NUM_STATES];
+    private final int[] nextPalette = new int[NUM_STATES];
+    private boolean built;
+
+    /**
+     * Create an empty pyramid with levels up to the one with a single block
+     * @param size side length of the grid
+     */
+    public ColorPyramid(int size) {
+        this.size = size;
+        int levels = 0;
+        while ((1 << levels) < size) {
+            levels++;
+        }
+        numLevels = levels;
+        sides = new int[numLevels + 1];
+        colors = new int[numLevels + 1][];
+        for (int level = 0; level <= numLevels; level++) {
+            sides[level] = (size + (1 << level) - 1) >> level;
+            if (level > 0)
+                colors[level] = new int[sides[level]*sides[level]];
+        }
+    }
+
+    /**
+     * Bring the pyramid up to date with a generation
+     * @param generation
+     * @param stateColors color of each state as 0xAARRGGBB. States without a color count as transparent.
+     * @param changes tiles that changed since the generation of the last update, or null if unknown
+     */
+    public void update(GenerationView generation, Map<Integer, Integer> stateColors, DirtyTiles changes) {
+        boolean paletteChanged = setPalette(stateColors);
+        if (!built || paletteChanged || changes == null || changes.getSize() != size || changes.isAll()) {
+            for (int level = 1; level <= numLevels; level++) {
+                for (int block = 0; block < colors[level].length; block++) {
+                    average(generation, level, block / sides[level], block % sides[level]);
+                }
+            }
+            built = true;
+            return;
+        }
+        int tilesPerSide = changes.getTilesPerSide();
+        changes.forEachDirtyTile(tile -> updateTile(generation, tile / tilesPerSide, tile % tilesPerSide));
+    }
+
+    // every block inside the tile, then the block above it on every higher level
+    private void updateTile(GenerationView generation, int tileRow, int tileCol) {
+        for (int level = 1; level <= Math.min(TILE_LEVEL, numLevels); level++) {
+            int blocksPerTile = 1 << (TILE_LEVEL - level);
+            int lastRow = Math.min(sides[level], (tileRow + 1)*blocksPerTile);
+            int lastCol = Math.min(sides[level], (tileCol + 1)*blocksPerTile);
+            for (int row = tileRow*blocksPerTile; row < lastRow; row++) {
+                for (int col = tileCol*blocksPerTile; col < lastCol; col++) {
+                    average(generation, level, row, col);
+                }
+            }
+        }
+        for (int level = TILE_LEVEL + 1; level <= numLevels; level++) {
+            average(generation, level, tileRow >> (level - TILE_LEVEL), tileCol >> (level - TILE_LEVEL));
+        }
+    }
+
+    private void average(GenerationView generation, int level, int row, int col) {
+        long alpha = 0;
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        long weight = 0;
+        int childSide = sides[level - 1];
+        for (int childRow = 2*row; childRow < Math.min(2*row + 2, childSide); childRow++) {
+            for (int childCol = 2*col; childCol < Math.min(2*col + 2, childSide); childCol++) {
+                int color = level == 1 ? palette[generation.getState(childRow*size + childCol) & (NUM_STATES - 1)]
+                        : colors[level - 1][childRow*childSide + childCol];
+                long cells = (long) getCellsAlong(level - 1, childRow)*getCellsAlong(level - 1, childCol);
+                alpha += cells*(color >>> 24);
+                red += cells*((color >> 16) & 0xFF);
+                green += cells*((color >> 8) & 0xFF);
+                blue += cells*(color & 0xFF);
+                weight += cells;
+            }
+        }
+        colors[level][row*sides[level] + col] = (int) (round(alpha, weight) << 24 | round(red, weight) << 16
+                | round(green, weight) << 8 | round(blue, weight));
+    }
+
+    private static long round(long sum, long weight) {
+        return (sum + weight/2)/weight;
+    }
+
+    // blocks along the right and bottom edges can be cut off by the edge of the grid
+    private int getCellsAlong(int level, int block) {
+        return Math.min(1 << level, size - (block << level));
+    }
+
+    // returns whether any color is different from the last update
+    private boolean setPalette(Map<Integer, Integer> stateColors) {
+        boolean changed = false;
+        for (int state = 0; state < NUM_STATES; state++) {
+            Integer color = stateColors.get(state);
+            nextPalette[state] = color == null ? 0 : color;
+            changed |= nextPalette[state] != palette[state];
+        }
+        System.arraycopy(nextPalette, 0, palette, 0, NUM_STATES);
+        return changed;
+    }
+
+    /**
+     * @param level between 1 and getNumLevels()
+     * @param index flat index of a cell
+     * @return average color of the block of the level that holds the cell, as 0xAARRGGBB
+     */
+    public int getColor(int level, int index) {
+        int row = index / size;
+        int col = index - row*size;
+        return colors[level][(row >> level)*sides[level] + (col >> level)];
+    }
+
+    /**
+     * @return number of levels above the cells, the last of which is a single block
+     */
+    public int getNumLevels() {
+        return numLevels;
+    }
+
+    /**
+     * @return side length of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,110 @@
+package GridCell;
+
+/**
+ * A counter-based random number generator. Instead of a stream of values that has to be consumed in order, every value
+ * is a hash (the SplitMix64 finalizer) of a seed, a step, a cell index and a draw number. The value a cell draws in a
+ * step is the same no matter which thread draws it or in what order the cells are visited, so a seeded run gives the
+ * same result whether it runs on one thread or many. A cell that needs several values in one step uses a different
+ * draw number for each.
+ */
+public class CounterRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final long seed;
+
+    /**
+     * @param seed
+     */
+    public CounterRandom(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return seed the generator was created with
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param step
+     * @param index flat index of the cell drawing the value
+     * @param draw number of the value among the values the cell draws in the step
+     * @return 64 random bits
+     */
+    public long nextLong(long step, int index, int draw) {
+        return hash(getStepKey(step), index, draw);
+    }
+
+    /**
+     * Hash of the seed and a step. Callers that draw values for many cells in one step compute it once and pass it to
+     * nextDoubleFromKey, which gives the same values as the other methods.
+     * @param step
+     * @return key of the step
+     */
+    public long getStepKey(long step) {
+        return mix(seed + GOLDEN_GAMMA*(step + 1));
+    }
+
+    /**
+     * @param stepKey key of the step, from getStepKey
+     * @param index
+     * @param draw
+     * @return number from a uniform distribution between 0.0 (inclusive) and 1.0 (exclusive)
+     */
+    public static double nextDoubleFromKey(long stepKey, int index, int draw) {
+        return (hash(stepKey, index, draw) >>> 11)*DOUBLE_UNIT;
+    }
+
+    private static long hash(long stepKey, int index, int draw) {
+        long hash = mix(stepKey + GOLDEN_GAMMA*(index + 1L));
+        return mix(hash + GOLDEN_GAMMA*(draw + 1L));
+    }
+
+    /**
+     * @param step
+     * @param index
+     * @param draw
+     * @return number from a uniform distribution between 0.0 (inclusive) and 1.0 (exclusive)
+     */
+    public double nextDouble(long step, int index, int draw) {
+        return (nextLong(step, index, draw) >>> 11)*DOUBLE_UNIT;
+    }
+
+    /**
+     * @param step
+     * @param index
+     * @param draw
+     * @param bound
+     * @return integer between 0 and bound-1 (inclusive)
+     */
+    public int nextInt(long step, int index, int draw, int bound) {
+        // the top 31 bits scaled into the range, which is biased by less than bound/2^31
+        return (int) (((nextLong(step, index, draw) >>> 33)*bound) >>> 31);
+    }
+
+    /**
+     * Fill an array with the values of consecutive cells, such as the cells of one row of a tile
+     * @param step
+     * @param firstIndex flat index of the cell whose value goes into values[start]
+     * @param draw
+     * @param values
+     * @param start
+     * @param length number of cells
+     */
+    public void fillDoubles(long step, int firstIndex, int draw, double[] values, int start, int length) {
+        long stepHash = getStepKey(step);
+        long drawGamma = GOLDEN_GAMMA*(draw + 1L);
+        for (int k = 0; k < length; k++) {
+            long hash = mix(stepHash + GOLDEN_GAMMA*(firstIndex + k + 1L));
+            values[start + k] = (mix(hash + drawGamma) >>> 11)*DOUBLE_UNIT;
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30))*0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27))*0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
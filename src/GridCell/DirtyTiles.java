@@ -0,0 +1,155 @@
+package GridCell;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of square tiles of a grid whose cells may have changed, kept as a bitmap with one bit per tile. Displays use it
+ * to redraw only the parts of a grid that changed since the last frame. The set can also be marked as all tiles at
+ * once, for changes that are not tracked cell by cell.
+ */
+public class DirtyTiles {
+    public static final int TILE_SIZE = 8;
+
+    private final int size;
+    private final int tilesPerSide;
+    private final long[] bits;
+    private boolean all;
+    private int numDirty;
+
+    /**
+     * Create an empty set for a grid
+     * @param size side length of the grid
+     */
+    public DirtyTiles(int size) {
+        this.size = size;
+        tilesPerSide = (size + TILE_SIZE - 1) / TILE_SIZE;
+        bits = new long[(tilesPerSide*tilesPerSide + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * Add the tile of a cell
+     * @param index flat index of the cell
+     */
+    public void mark(int index) {
+        int tile = getTile(index);
+        long bit = 1L << tile;
+        if ((bits[tile >>> 6] & bit) == 0) {
+            bits[tile >>> 6] |= bit;
+            numDirty++;
+        }
+    }
+
+    /**
+     * Add every tile
+     */
+    public void markAll() {
+        all = true;
+    }
+
+    /**
+     * Add every tile of another set of the same grid size
+     * @param other
+     */
+    public void add(DirtyTiles other) {
+        if (other.all) {
+            all = true;
+            return;
+        }
+        numDirty = 0;
+        for (int word = 0; word < bits.length; word++) {
+            bits[word] |= other.bits[word];
+            numDirty += Long.bitCount(bits[word]);
+        }
+    }
+
+    /**
+     * Remove every tile
+     */
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        all = false;
+        numDirty = 0;
+    }
+
+    /**
+     * Overwrite this set with another set of the same grid size
+     * @param other
+     */
+    public void copyFrom(DirtyTiles other) {
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+        all = other.all;
+        numDirty = other.numDirty;
+    }
+
+    /**
+     * @param tile
+     * @return whether the tile is in the set
+     */
+    public boolean isDirty(int tile) {
+        return all || (bits[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    /**
+     * Run an action on every tile in the set, skipping 64 clean tiles at a time
+     * @param action called with the index of each tile
+     */
+    public void forEachDirtyTile(IntConsumer action) {
+        int numTiles = getNumTiles();
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = all ? -1L : bits[word];
+            while (remaining != 0) {
+                int tile = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                if (tile >= numTiles)
+                    return;
+                action.accept(tile);
+                remaining &= remaining - 1;
+            }
+        }
+    }
+
+    /**
+     * @return whether every tile was added at once with markAll
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * @return fraction of the tiles in the set, between 0 and 1
+     */
+    public double getDirtyFraction() {
+        return all ? 1 : numDirty/(double) getNumTiles();
+    }
+
+    /**
+     * @param index flat index of a cell
+     * @return tile the cell belongs to
+     */
+    public int getTile(int index) {
+        int row = index / size;
+        int col = index - row*size;
+        return (row / TILE_SIZE)*tilesPerSide + col / TILE_SIZE;
+    }
+
+    /**
+     * @return number of tiles in the grid
+     */
+    public int getNumTiles() {
+        return tilesPerSide*tilesPerSide;
+    }
+
+    /**
+     * @return number of tiles along each side of the grid, which are numbered row by row
+     */
+    public int getTilesPerSide() {
+        return tilesPerSide;
+    }
+
+    /**
+     * @return side length of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,35 @@
+package GridCell;
+
+public enum EDGE_TYPE {
+    NORMAL {
+        @Override
+        public String toString() {
+            return "normal";
+        }
+    },
+    TOROIDAL {
+        @Override
+        public String toString() {
+            return "toroidal";
+        }
+    },
+    INFINITE {
+        @Override
+        public String toString() {
+            return "infinite";
+        }
+    };
+
+    /**
+     * Finds the edge type with the given name, as written in the edges element of an automaton xml file
+     * @param name
+     * @return matching edge type, or NORMAL if no edge type has that name
+     */
+    public static EDGE_TYPE fromString(String name) {
+        for (EDGE_TYPE type : values()) {
+            if (type.toString().equals(name))
+                return type;
+        }
+        return NORMAL;
+    }
+}
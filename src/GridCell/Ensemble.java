@@ -0,0 +1,199 @@
+package GridCell;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Steps many replicas of one configuration (the same rule, parameters, size, shape and edges, with different seeds)
+ * in lockstep. The properties of every replica are stored interleaved, with the replica as the fastest changing
+ * dimension, so the neighbors of a cell are looked up once per step for the whole ensemble and the loops over
+ * replicas run over contiguous memory, which the JIT can vectorize. Every replica keeps the random values of the grid
+ * it was loaded from, so replica r ends up exactly where the grid would have if it had been run on its own.
+ */
+public class Ensemble {
+    private final EnsembleRule rule;
+    private final NeighborTable neighborTable;
+    private final int numCells;
+    private final int numReplicas;
+    private final CounterRandom[] randoms;
+    private final long[] stepKeys;
+    private final ParallelRange parallelRange = new ParallelRange(ForkJoinPool.commonPool());
+    private byte[] states;
+    private byte[] nextStates;
+    private int[] ages;
+    private int[] nextAges;
+    private long step;
+
+    /**
+     * Create an ensemble with the rule and parameters of a grid. Every replica has to be loaded with setReplica
+     * before stepping.
+     * @param template configured grid whose rule implements EnsembleRule
+     * @param numReplicas
+     * @throws IllegalArgumentException if the grid has no ensemble rule or infinite edges
+     */
+    public Ensemble(Grid template, int numReplicas) {
+        if (!(template instanceof EnsembleRule))
+            throw new IllegalArgumentException(template.getClass().getSimpleName() + " can't be run as an ensemble");
+        if (template.getEdgeType() == EDGE_TYPE.INFINITE)
+            throw new IllegalArgumentException("Ensembles need bounded edges");
+        rule = (EnsembleRule) template;
+        neighborTable = template.getNeighborTable();
+        numCells = template.getCurrentGeneration().getNumCells();
+        this.numReplicas = numReplicas;
+        randoms = new CounterRandom[numReplicas];
+        stepKeys = new long[numReplicas];
+        states = new byte[numCells*numReplicas];
+        nextStates = new byte[numCells*numReplicas];
+        ages = new int[numCells*numReplicas];
+        nextAges = new int[numCells*numReplicas];
+        step = template.getStep();
+    }
+
+    /**
+     * Load the current generation and the random values of a grid into one replica
+     * @param replica between 0 and getNumReplicas()-1
+     * @param grid grid with the same configuration as the template, usually with a different seed
+     * @throws IllegalArgumentException if the grid has a different size or rule
+     */
+    public void setReplica(int replica, Grid grid) {
+        GenerationView generation = grid.getCurrentGeneration();
+        if (generation.getNumCells() != numCells || grid.getClass() != rule.getClass())
+            throw new IllegalArgumentException("Replicas must have the same configuration as the template");
+        for (int index = 0; index < numCells; index++) {
+            states[index*numReplicas + replica] = (byte) generation.getState(index);
+            ages[index*numReplicas + replica] = generation.getAge(index);
+        }
+        randoms[replica] = grid.getRandom();
+    }
+
+    /**
+     * Step every replica once
+     */
+    public void step() {
+        step++;
+        for (int replica = 0; replica < numReplicas; replica++) {
+            stepKeys[replica] = randoms[replica].getStepKey(step);
+        }
+        parallelRange.run(numCells, numReplicas, (band, start, end) -> updateRange(start, end));
+        byte[] oldStates = states;
+        states = nextStates;
+        nextStates = oldStates;
+        int[] oldAges = ages;
+        ages = nextAges;
+        nextAges = oldAges;
+    }
+
+    private void updateRange(int start, int end) {
+        int[] neighbors = new int[neighborTable.getMaxNeighbors()];
+        int[] counts = new int[numReplicas];
+        byte countedState = (byte) rule.getCountedState();
+        for (int index = start; index < end; index++) {
+            int numNeighbors = neighborTable.getNeighbors(index, neighbors);
+            for (int replica = 0; replica < numReplicas; replica++) {
+                counts[replica] = 0;
+            }
+            for (int k = 0; k < numNeighbors; k++) {
+                int offset = neighbors[k]*numReplicas;
+                for (int replica = 0; replica < numReplicas; replica++) {
+                    counts[replica] += states[offset + replica] == countedState ? 1 : 0;
+                }
+            }
+            rule.updateReplicas(this, index, counts);
+        }
+    }
+
+    /**
+     * Count the cells in each state of every replica
+     * @param numStates
+     * @return counts[replica][state]
+     */
+    public int[][] countStates(int numStates) {
+        int[][] counts = new int[numReplicas][numStates];
+        for (int index = 0; index < numCells; index++) {
+            int offset = index*numReplicas;
+            for (int replica = 0; replica < numReplicas; replica++) {
+                int state = states[offset + replica];
+                if (state < numStates)
+                    counts[replica][state]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param replica
+     * @param index flat index of a cell
+     * @return state of the cell in the replica
+     */
+    public int getState(int replica, int index) {
+        return states[index*numReplicas + replica];
+    }
+
+    /**
+     * Return a number picked from a uniform distribution between 0.0 and 1.0, the same one the replica's own grid
+     * would draw for the cell during this step
+     * @param replica
+     * @param index flat index of the cell
+     * @param draw
+     * @return random double
+     */
+    public double getRandomDouble(int replica, int index, int draw) {
+        return CounterRandom.nextDoubleFromKey(stepKeys[replica], index, draw);
+    }
+
+    /**
+     * @return states of the current generation, indexed by cell*getNumReplicas() + replica
+     */
+    public byte[] getStates() {
+        return states;
+    }
+
+    /**
+     * @return states of the next generation, indexed like getStates()
+     */
+    public byte[] getNextStates() {
+        return nextStates;
+    }
+
+    /**
+     * @return ages of the current generation, indexed like getStates()
+     */
+    public int[] getAges() {
+        return ages;
+    }
+
+    /**
+     * @return ages of the next generation, indexed like getStates()
+     */
+    public int[] getNextAges() {
+        return nextAges;
+    }
+
+    /**
+     * @return number of replicas
+     */
+    public int getNumReplicas() {
+        return numReplicas;
+    }
+
+    /**
+     * @return number of cells in each replica
+     */
+    public int getNumCells() {
+        return numCells;
+    }
+
+    /**
+     * @return number of steps since the replicas were configured
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Turn splitting large steps across the cores of the machine on or off (on by default)
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        parallelRange.setEnabled(parallel);
+    }
+}
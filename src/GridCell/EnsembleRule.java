@@ -0,0 +1,23 @@
+package GridCell;
+
+/**
+ * Rule of a synchronous simulation that can step many replicas of one grid together in an Ensemble. The next state of
+ * a cell may only depend on its own state and age and on how many of its neighbors are in one state, which the
+ * ensemble counts for every replica before calling the rule.
+ */
+public interface EnsembleRule {
+
+    /**
+     * @return state whose neighbors are counted for every cell
+     */
+    int getCountedState();
+
+    /**
+     * Write the next state and age of one cell in every replica. The cell's properties in replica r are at
+     * index*getNumReplicas() + r of the ensemble's arrays.
+     * @param ensemble current and next generation of every replica
+     * @param index flat index of the cell
+     * @param neighborCounts number of neighbors in the counted state, one per replica
+     */
+    void updateReplicas(Ensemble ensemble, int index, int[] neighborCounts);
+}
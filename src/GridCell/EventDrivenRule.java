@@ -0,0 +1,29 @@
+package GridCell;
+
+/**
+ * A stochastic rule written as events that fire at random times. Each cell has a rate, the expected number of events
+ * it fires per unit of simulated time, and an EventScheduler picks which cell fires next and when. Cells whose events
+ * would not change anything should have a rate of zero, so the scheduler never spends time on them.
+ *
+ * The rate of a cell may only depend on the cell and its neighbors, which lets the scheduler know which rates an event
+ * could have changed.
+ */
+public interface EventDrivenRule {
+
+    /**
+     * @param cells current generation
+     * @param index flat index of the cell
+     * @return rate at which the cell fires events, zero if none of its events would change anything
+     */
+    double getRate(StatePlanes cells, int index);
+
+    /**
+     * Fire one event of a cell, changing the cells in place
+     * @param cells current generation
+     * @param index flat index of the cell
+     * @param event number of the event since the scheduler was reset, which keys any random values the event draws
+     * @param changed buffer with room for the cell and all of its neighbors that the changed cells are written into
+     * @return number of changed cells
+     */
+    int fireEvent(StatePlanes cells, int index, long event, int[] changed);
+}
@@ -0,0 +1,92 @@
+package GridCell;
+
+/**
+ * Runs an event driven rule in continuous time with the Gillespie algorithm. The rates of every cell are kept in a
+ * RateTree; the time until the next event is drawn from an exponential distribution with the total rate, and the cell
+ * that fires is drawn in proportion to its rate. After an event only the rates of the changed cells and the cells that
+ * have them as neighbors are recomputed. Only cells that can change are ever picked, so a step costs time per event
+ * instead of per cell, and periods where nothing can happen are skipped entirely. The random values of each event are
+ * keyed by its number, so a seeded run always fires the same events.
+ */
+public class EventScheduler {
+    private final NeighborTable neighborTable;
+    private final EventDrivenRule rule;
+    private final CounterRandom random;
+    private final RateTree rates;
+    private final int[] changed;
+    private final int[] reverseNeighbors;
+    private double time;
+    private long numEvents;
+
+    /**
+     * Create a scheduler for a grid. Call reset() before firing events.
+     * @param neighborTable neighbors of the grid the rule runs on
+     * @param rule
+     * @param random
+     */
+    public EventScheduler(NeighborTable neighborTable, EventDrivenRule rule, CounterRandom random) {
+        this.neighborTable = neighborTable;
+        this.rule = rule;
+        this.random = random;
+        int size = neighborTable.getSize();
+        rates = new RateTree(size*size);
+        changed = new int[neighborTable.getMaxNeighbors() + 1];
+        reverseNeighbors = new int[neighborTable.getMaxReverseNeighbors()];
+    }
+
+    /**
+     * Compute the rate of every cell from scratch and set the simulated time back to zero
+     * @param cells current generation
+     */
+    public void reset(StatePlanes cells) {
+        double[] cellRates = new double[cells.getNumCells()];
+        for (int index = 0; index < cellRates.length; index++) {
+            cellRates[index] = rule.getRate(cells, index);
+        }
+        rates.setRates(cellRates);
+        time = 0;
+        numEvents = 0;
+    }
+
+    /**
+     * Fire a fixed number of events, or fewer if the grid runs out of cells that can change. The simulated time moves
+     * forward by however long those events took, so quiet stretches pass in a single call.
+     * @param cells current generation, changed in place
+     * @param maxEvents
+     * @return number of events fired
+     */
+    public long fireEvents(StatePlanes cells, long maxEvents) {
+        long firedBefore = numEvents;
+        while (numEvents - firedBefore < maxEvents && rates.getTotalRate() > 0) {
+            time += drawWait();
+            fireEvent(cells);
+        }
+        return numEvents - firedBefore;
+    }
+
+    // exponentially distributed with the total rate, so the wait does not depend on how long the grid already waited
+    private double drawWait() {
+        return -Math.log(1.0 - random.nextDouble(numEvents, -1, 0))/rates.getTotalRate();
+    }
+
+    private void fireEvent(StatePlanes cells) {
+        int index = rates.find(random.nextDouble(numEvents, -1, 1)*rates.getTotalRate());
+        int numChanged = rule.fireEvent(cells, index, numEvents, changed);
+        numEvents++;
+        for (int k = 0; k < numChanged; k++) {
+            int cell = changed[k];
+            rates.setRate(cell, rule.getRate(cells, cell));
+            int numReverse = neighborTable.getReverseNeighbors(cell, reverseNeighbors);
+            for (int n = 0; n < numReverse; n++) {
+                rates.setRate(reverseNeighbors[n], rule.getRate(cells, reverseNeighbors[n]));
+            }
+        }
+    }
+
+    /**
+     * @return simulated time since the last reset
+     */
+    public double getTime() {
+        return time;
+    }
+}
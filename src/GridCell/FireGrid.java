@@ -1,7 +1,5 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -16,7 +14,7 @@ import java.util.HashMap;
  * @see <a href="https://www2.cs.duke.edu/courses/spring19/compsci308/assign/02_cellsociety/nifty/shiflet-fire/">Spreading of Fire</a>
  * @author Hunter Gregory
  */
-public class FireGrid extends Grid {
+public class FireGrid extends SynchronousGrid implements EnsembleRule {
     private static final int EMPTY = 0;
     private static final int GREEN = 1;
     private static final int BURNING = 2;
@@ -25,7 +23,7 @@ public class FireGrid extends Grid {
     private double probLightning;
     private double burnTime;
     private double probGrow;
-    private HashMap<Integer, Color> myStateColorMap;
+    private HashMap<Integer, Integer> myStateColorMap;
 
     /**
      * Create a FireGrid.
@@ -39,9 +37,9 @@ public class FireGrid extends Grid {
     @Override
     public void initStateColorMap() {
         myStateColorMap = new HashMap<>();
-        myStateColorMap.put(EMPTY, Color.YELLOW);
-        myStateColorMap.put(GREEN, Color.GREEN);
-        myStateColorMap.put(BURNING, Color.RED);
+        myStateColorMap.put(EMPTY, ArgbColor.YELLOW);
+        myStateColorMap.put(GREEN, ArgbColor.GREEN);
+        myStateColorMap.put(BURNING, ArgbColor.RED);
         setStateColorMap(myStateColorMap);
 
     }
@@ -59,70 +57,89 @@ public class FireGrid extends Grid {
         probGrow = params[3];
     }
 
+    // lightning and regrowth can change a cell no matter what its neighbors are doing
     @Override
-    public void updateCells() {
-        // getGrid() returns a copy of the grid, so these two variables reference different cells
-        Cell[][] newGrid = getGrid();
-        Cell[][] oldGrid = getGrid();
-        //System.out.println("new update");
-
-        int size = oldGrid.length;
-        for (int r=0; r<size; r++) {
-            for (int c=0; c<size; c++) {
-                Cell currentCell = oldGrid[r][c];
-                Cell newCell = newGrid[r][c];
-                if (currentCell.getState() == EMPTY) {
-                    updateEmptyCell(newCell);
-                    continue;
-                }
-                if (currentCell.getState() == BURNING) {
-                    updateBurningCell(newCell);
-                    continue;
-                }
-                updateGreenCell(newCell, getNeighbors(r,c));
-            }
-        }
-        setGrid(newGrid);
+    protected boolean requiresFullEvaluation() {
+        return probGrow > 0 || probLightning*probCatch > 0;
     }
 
-    private void updateEmptyCell(Cell newCell) {
-        if (getRandomDouble() <= probGrow) {
-            setCellState(newCell, GREEN);
-            //System.out.println("Growing!");
+    @Override
+    protected void updateCell(StatePlanes oldCells, StatePlanes newCells, int index) {
+        newCells.setState(index, oldCells.getState(index));
+        newCells.setAge(index, oldCells.getAge(index));
+        if (oldCells.getState(index) == EMPTY) {
+            updateEmptyCell(newCells, index);
+            return;
         }
+        if (oldCells.getState(index) == BURNING) {
+            updateBurningCell(newCells, index);
+            return;
+        }
+        updateGreenCell(newCells, index);
     }
 
-    private void updateBurningCell(Cell newCell) {
-        //System.out.println("age was " + newCell.getAge());
-        newCell.setAge(1 + newCell.getAge());
-        if (newCell.getAge() >= burnTime) {
-            setCellState(newCell, EMPTY);
-            newCell.setAge(0);
-            //System.out.println("setting empty");
+    private void updateEmptyCell(StatePlanes newCells, int index) {
+        if (grows(getRandomDouble(index, 0))) {
+            newCells.setState(index, GREEN);
         }
     }
 
-    private void updateGreenCell(Cell newCell, ArrayList<Integer[]> neighborCoords) {
-        //double probTransition = probLightning * probCatch;
-        double probTransition = 0;
-        for (Integer[] neighborCoord : neighborCoords) {
-            if (neighborCoord[2] == BURNING) { //gets the state from the (row, col, state) coordinate
-                probTransition += probCatch;
-            }
+    private void updateBurningCell(StatePlanes newCells, int index) {
+        newCells.setAge(index, 1 + newCells.getAge(index));
+        if (burnsOut(newCells.getAge(index))) {
+            newCells.setState(index, EMPTY);
+            newCells.setAge(index, 0);
         }
-        double dub = getRandomDouble();
-        if (dub <= probTransition) {
-            setCellState(newCell, BURNING);
-            //System.out.println("Neighbor burnt me!");
-        }
-        else if (dub <= probTransition + probLightning * probCatch) {
-            setCellState(newCell, BURNING);
-            //System.out.println("Lightning!");
+    }
+
+    private void updateGreenCell(StatePlanes newCells, int index) {
+        if (catchesFire(countNeighbors(index, BURNING), getRandomDouble(index, 0))) {
+            newCells.setState(index, BURNING);
         }
     }
 
-    private void setCellState(Cell cell, int state) {
-        cell.setState(state);
-        cell.setColor(myStateColorMap.get(state));
+    private boolean grows(double dub) {
+        return dub <= probGrow;
+    }
+
+    private boolean burnsOut(int age) {
+        return age >= burnTime;
+    }
+
+    private boolean catchesFire(int numBurningNeighbors, double dub) {
+        //double probTransition = probLightning * probCatch;
+        double probTransition = numBurningNeighbors * probCatch;
+        return dub <= probTransition || dub <= probTransition + probLightning * probCatch;
+    }
+
+    @Override
+    public int getCountedState() {
+        return BURNING;
+    }
+
+    @Override
+    public void updateReplicas(Ensemble ensemble, int index, int[] neighborCounts) {
+        byte[] states = ensemble.getStates();
+        byte[] nextStates = ensemble.getNextStates();
+        int[] ages = ensemble.getAges();
+        int[] nextAges = ensemble.getNextAges();
+        int numReplicas = ensemble.getNumReplicas();
+        int offset = index*numReplicas;
+        for (int replica = 0; replica < numReplicas; replica++) {
+            int state = states[offset + replica];
+            int age = ages[offset + replica];
+            if (state == EMPTY && grows(ensemble.getRandomDouble(replica, index, 0))) {
+                state = GREEN;
+            }
+            else if (state == BURNING && burnsOut(++age)) {
+                state = EMPTY;
+                age = 0;
+            }
+            else if (state == GREEN && catchesFire(neighborCounts[replica], ensemble.getRandomDouble(replica, index, 0))) {
+                state = BURNING;
+            }
+            nextStates[offset + replica] = (byte) state;
+            nextAges[offset + replica] = age;
+        }
     }
 }
@@ -0,0 +1,55 @@
+package GridCell;
+
+/**
+ * Read-only view of one generation of a grid. Classes outside of the simulation (such as the visualization) use this
+ * to look at the current generation without being able to change it or having to copy it.
+ */
+public interface GenerationView {
+
+    /**
+     * @return side length of the grid
+     */
+    int getSize();
+
+    /**
+     * @return total number of cells in the grid
+     */
+    int getNumCells();
+
+    /**
+     * @param row
+     * @param col
+     * @return flat index of the cell, row*size+col
+     */
+    int getIndex(int row, int col);
+
+    /**
+     * @param index flat index of a cell
+     * @return row of the cell
+     */
+    int getRow(int index);
+
+    /**
+     * @param index flat index of a cell
+     * @return column of the cell
+     */
+    int getCol(int index);
+
+    /**
+     * @param index flat index of a cell
+     * @return state of the cell
+     */
+    int getState(int index);
+
+    /**
+     * @param index flat index of a cell
+     * @return age property of the cell
+     */
+    int getAge(int index);
+
+    /**
+     * @param index flat index of a cell
+     * @return energy property of the cell
+     */
+    int getEnergy(int index);
+}
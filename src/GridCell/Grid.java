@@ -1,29 +1,24 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-import javafx.scene.transform.Rotate;
-
 import java.util.LinkedHashMap;
-import java.util.Random;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
 
 /**
- * Super class that all other simulations will inherit from. This class defines all methods common to all simulations such as a method to get the neighbors of the current cell, as well as getters and setters for objects contained within the super class. This class also sets global variables that help to define input parameters to some of the methods and customize their behavior to for difference scenarios. It contains another important method to set all the immutable properties of a simulation that are related to the configuration of the simulation. The most important method in this class is the getNeighbors() method which defines which cells in the grid have the relationship "neighbor" to the current cell based on the shape of the cell.
+ * Super class that all other simulations will inherit from. This class defines all methods common to all simulations such as a method to get the neighbors of the current cell, as well as getters and setters for objects contained within the super class. This class also sets global variables that help to define input parameters to some of the methods and customize their behavior to for difference scenarios. It contains another important method to set all the immutable properties of a simulation that are related to the configuration of the simulation. The most important methods in this class are the neighbor methods (getNeighbors(), countNeighbors() and forEachNeighbor()) which define which cells in the grid have the relationship "neighbor" to the current cell based on the shape of the cell.
  * @author Connor Ghazaleh
  */
 public abstract class Grid {
-    private static final String TOROIDAL_EDGE = "toroidal";
-    private static final String NORMAL_EDGE = "normal";
-    private static final String INFINITE_EDGE = "infinite";
-
     protected static final int ROW_INDEX = 0;
     protected static final int COL_INDEX = 1;
     protected static final int STATE_INDEX = 2;
 
-    private Cell[][] grid;
-    private HashMap<Integer, Color> stateColorMap;
-    private Random rand = new Random();
+    private StatePlanes currentGeneration;
+    private StatePlanes nextGeneration;
+    private HashMap<Integer, Integer> stateColorMap;
     private int gridSize;
     private double cellSize;
     private final double screenSize;
@@ -32,9 +27,14 @@ public abstract class Grid {
     LinkedHashMap<String, Double[]> sliderMap;
 
     //Immutables
-    private String edgeType;
+    private EDGE_TYPE edgeType;
     private CELL_SHAPE myCellShape;
     private Integer[] myNeighborConfig;
+    private NeighborTable myNeighborTable;
+    private final ParallelRange myParallelRange = new ParallelRange(ForkJoinPool.commonPool());
+    private CounterRandom myRandom = new CounterRandom(ThreadLocalRandom.current().nextLong());
+    private boolean mySeedFixed;
+    private long myStep;
 
     /**
      * constructor
@@ -42,8 +42,6 @@ public abstract class Grid {
      * @param screenSize
      */
     public Grid(int gridSize, double screenSize) {
-        System.out.println("Called constructor on size: "+gridSize);
-        System.out.println("Grid of size: " + gridSize);
         initStateColorMap();
         this.gridSize = gridSize;
         this.screenSize = screenSize;
@@ -57,19 +55,36 @@ public abstract class Grid {
      * @param neighborConfig
      */
     public void setImmutables(String sim_edgeType, CELL_SHAPE cellShape, Integer[] neighborConfig){
-        edgeType = sim_edgeType;
-        myCellShape = cellShape;
-        switch(myCellShape){
-            case HEXAGON:
-                grid = new HexagonCell[gridSize][gridSize];
-                break;
-            case TRIANGLE:
-                grid = new TriangleCell[gridSize][gridSize];
-                break;
-            default:
-                grid = new RectangleCell[gridSize][gridSize];
+        edgeType = EDGE_TYPE.fromString(sim_edgeType);
+        if (edgeType == EDGE_TYPE.INFINITE && !supportsInfiniteEdges()) {
+            System.out.println("Infinite edges are not supported by this simulation, using normal edges");
+            edgeType = EDGE_TYPE.NORMAL;
         }
+        myCellShape = cellShape;
+        resetGenerations();
         myNeighborConfig = neighborConfig;
+        compileNeighborTable();
+    }
+
+    private void compileNeighborTable() {
+        myNeighborTable = new NeighborTable(myCellShape, myNeighborConfig, edgeType, gridSize);
+    }
+
+    /**
+     * Whether the simulation can run on an unbounded plane. Simulations that return true are responsible for stepping
+     * the plane themselves when the edge type is infinite; the neighbor methods of this class treat cells outside of
+     * the visible grid as missing, like normal edges.
+     * @return false unless overridden
+     */
+    protected boolean supportsInfiniteEdges() {
+        return false;
+    }
+
+    /**
+     * Called whenever the current generation is replaced from outside of updateCells (a new configuration, size or
+     * random composition), so subclasses can drop anything they derived from the previous one
+     */
+    protected void gridChanged() {
     }
 
     /**
@@ -79,9 +94,9 @@ public abstract class Grid {
 
     /**
      * set color map that maps each state to a particular color
-     * @param colorMap
+     * @param colorMap colors packed as 0xAARRGGBB, see ArgbColor
      */
-    public void setStateColorMap(HashMap<Integer, Color> colorMap){
+    public void setStateColorMap(HashMap<Integer, Integer> colorMap){
         stateColorMap = colorMap;
     }
 
@@ -89,7 +104,7 @@ public abstract class Grid {
      * Return the map that assigns colors to states
      * @return
      */
-    public HashMap<Integer, Color> getStateColorMap() {
+    public HashMap<Integer, Integer> getStateColorMap() {
         return stateColorMap;
     }
 
@@ -103,6 +118,24 @@ public abstract class Grid {
     }
 
 
+    /**
+     * Returns the edge type the simulation is running with
+     * @return
+     */
+    public EDGE_TYPE getEdgeType(){
+        return edgeType;
+    }
+
+
+    /**
+     * Returns the selected neighbors, or [-1] for every possible neighbor
+     * @return
+     */
+    protected Integer[] getNeighborConfig(){
+        return myNeighborConfig;
+    }
+
+
     /**
      * Initialize the sliders for a simulation
      */
@@ -135,58 +168,44 @@ public abstract class Grid {
      */
     public void setGridRandom(Double[] composition){
         setCurrentComposition(composition);
-        ArrayList<Integer> stateCounts = calcCellsPerState(composition);
+        int[] stateCounts = calcCellsPerState(composition);
         assignGridByStateCounts(stateCounts);
     }
 
-    private void drawCells(int row, int col){
-        if (myCellShape == CELL_SHAPE.SQUARE){
-            grid[row][col] = new RectangleCell(col*cellSize + GRID_PADDING, row*cellSize + GRID_PADDING, cellSize);
-        }
-        if (myCellShape == CELL_SHAPE.TRIANGLE){
-            //rotate based on row-col position
-            boolean flip = false;
-            if ((row+col) % 2 == 1){
-                flip = true;
-            }
-            grid[row][col] = new TriangleCell(col*cellSize*.5 + GRID_PADDING, row*cellSize*.75 + GRID_PADDING, cellSize, flip);
-        }
-        if (myCellShape == CELL_SHAPE.HEXAGON){
-            if (col % 2 == 0){
-                grid[row][col] = new HexagonCell(col*cellSize*(2.0/3.0) + GRID_PADDING, row*cellSize + GRID_PADDING-cellSize/2, cellSize);
-            }else{
-                grid[row][col] = new HexagonCell(col*cellSize*(2.0/3.0) + GRID_PADDING, row*cellSize + GRID_PADDING, cellSize);
-            }
-        }
-    }
-
     /**
      * Set grid randomly based on input composition (array of numbers)
      * @param composition array of numbers associated with each state
      */
     public void setGridRandomNum(Double[] composition){
         setCurrentComposition(composition);
-        ArrayList<Integer> stateCounts = calcNumStatesFromStatesArray(composition);
-        for (Integer dub : stateCounts) {
-            System.out.println(dub);
-        }
+        int[] stateCounts = calcNumStatesFromStatesArray(composition);
         assignGridByStateCounts(stateCounts);
     }
 
-    private void assignGridByStateCounts(ArrayList<Integer> stateCounts) {
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                int index = getRandomInt(stateCounts.size());
-                int state = stateCounts.get(index);
-                stateCounts.remove(index);
-                drawCells(row,col);
-                setCellState(row,col,state);
+    /**
+     * Lays the states out in order and then shuffles the planes in place (Fisher-Yates), so every arrangement is
+     * equally likely without building a list with one element per cell
+     * @param stateCounts number of cells for each state
+     */
+    private void assignGridByStateCounts(int[] stateCounts) {
+        restartRandom();
+        currentGeneration.clear(0);
+        int numCells = currentGeneration.getNumCells();
+        int index = 0;
+        for (int state = 0; state < stateCounts.length; state++) {
+            for (int i = 0; i < stateCounts[state] && index < numCells; i++) {
+                currentGeneration.setState(index, state);
+                index++;
             }
         }
+        for (int i = numCells - 1; i > 0; i--) {
+            currentGeneration.swap(i, getRandomInt(i, 0, i + 1));
+        }
+        gridChanged();
     }
 
-    private ArrayList<Integer> calcNumStatesFromStatesArray(Double[] composition){
-        ArrayList<Integer> statesArrList = new ArrayList<>();
+    private int[] calcNumStatesFromStatesArray(Double[] composition){
+        int[] stateCounts = new int[composition.length];
         int sum = 0;
         int index = -1;
         for (int i = 0; i < composition.length; i++){
@@ -202,11 +221,9 @@ public abstract class Grid {
         else
             composition[index] = inferred;
         for(int state = 0; state < composition.length; state++){
-            for (int i = 0; i < composition[state]; i++){
-                statesArrList.add(state);
-            }
+            stateCounts[state] = (int) Math.ceil(composition[state]);
         }
-        return statesArrList;
+        return stateCounts;
     }
 
     private void setCurrentComposition(Double[] composition) {
@@ -226,16 +243,8 @@ public abstract class Grid {
         return curComposition;
     }
 
-    private ArrayList<Integer> calcCellsPerState(Double[] composition){
-        int gridSize = grid.length*grid.length;
-        int[] stateCounts = fillStateCounts(composition,gridSize);
-        ArrayList<Integer> allStates = new ArrayList<>();
-        for (int index = 0; index < stateCounts.length; index++){
-            for (int i = 0; i < stateCounts[index]; i++){
-                allStates.add(index);
-            }
-        }
-        return allStates;
+    private int[] calcCellsPerState(Double[] composition){
+        return fillStateCounts(composition, currentGeneration.getNumCells());
     }
 
     private int[] fillStateCounts(Double[] composition, int gridSize){
@@ -268,98 +277,135 @@ public abstract class Grid {
      */
     public void setGridSpecific(ArrayList<Integer[]> coordinates){
         int remainingState = coordinates.get(coordinates.size()-1)[2];
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                drawCells(row,col);
-                setCellState(row,col,remainingState);
-            }
-        }
+        currentGeneration.clear(remainingState);
         for (Integer[] point : coordinates){
             if (point[0] != -1) {
                 setCellState(point[0],point[1],point[2]);
             }
         }
+        restartRandom();
+        gridChanged();
     }
 
 
     private void setCellState(int row, int column, int state){
-        grid[row][column].setState(state);
-        grid[row][column].setColor(stateColorMap.get(state));
+        currentGeneration.setState(currentGeneration.getIndex(row, column), state);
     }
     
 
     /**
-     * Gets the neighborhood of a cell at specified position.
-     * @param row
-     * @param col
-     * @return array of Integers of the form [row, col, state] for each neighboring cell
-     * @throws IllegalArgumentException
-     */
-    protected ArrayList<Integer[]> getNeighbors(int row, int col) throws IllegalArgumentException {
-        if (!isInBounds(row,col))
-            throw new IllegalArgumentException(String.format("(%d, %d) is not in the grid bounds", row,col));
-        Integer[] deltaR = myCellShape.getDeltaR(row, col, myNeighborConfig);
-        Integer[] deltaC = myCellShape.getDeltaC(row, col, myNeighborConfig);
-        ArrayList<Integer[]> neighbors = new ArrayList<>();
-        for (int k=0; k<deltaR.length; k++) {
-            int neighborRow = row + deltaR[k];
-            int neighborCol = col + deltaC[k];
-            if (edgeType.equals(TOROIDAL_EDGE)){
-                int[] coordinates = wrapEdge(neighborCol,neighborRow);
-                neighborRow = coordinates[0];
-                neighborCol = coordinates[1];
-            }
-            if (isInBounds(neighborRow, neighborCol)) {
-                Integer[] neighbor = {neighborRow, neighborCol, grid[neighborRow][neighborCol].getState()};
-                neighbors.add(neighbor);
-            }
-        }
-        return neighbors;
+     * Gets the neighborhood of a cell without allocating anything.
+     * @param index flat index of the cell
+     * @param buffer caller-owned array of length at least getMaxNeighbors() that the neighbor indices are written into
+     * @return number of neighbors written into the buffer
+     */
+    protected int getNeighbors(int index, int[] buffer) {
+        return myNeighborTable.getNeighbors(index, buffer);
     }
 
 
-    private int[] wrapEdge(int neighborCol, int neighborRow){
-        if (neighborCol < 0){
-            neighborCol = grid.length+neighborCol;
-        }
-        if (neighborRow < 0) {
-            neighborRow = grid.length+neighborRow;
-        }
-        if (neighborCol >= 0 && neighborRow >= 0){
-            neighborRow = neighborRow % grid.length;
-            neighborCol = neighborCol % grid.length;
-        }
-        return new int[]{neighborRow,neighborCol};
+    /**
+     * Count the neighbors of a cell that are in a given state in the current generation
+     * @param index flat index of the cell
+     * @param state
+     * @return number of neighbors in the state
+     */
+    protected int countNeighbors(int index, int state) {
+        return myNeighborTable.countNeighbors(index, currentGeneration, state);
     }
 
 
-    private boolean isInBounds(int r, int c) {
-        return r>=0 && r<gridSize && c>=0 && c<gridSize;
+    /**
+     * Call the visitor with the index and current state of every neighbor of a cell
+     * @param index flat index of the cell
+     * @param visitor
+     */
+    protected void forEachNeighbor(int index, NeighborVisitor visitor) {
+        myNeighborTable.forEachNeighbor(index, currentGeneration, visitor);
     }
 
 
     /**
-     * Return a copy of the grid of cells so that it can interact with methods in other classes
-     * @return grid of cells
+     * Return the largest number of neighbors any cell can have, which is the buffer length getNeighbors needs
+     * @return
      */
-    public Cell[][] getGrid() {
-        int size = grid.length;
-        Cell[][] gridCopy = new Cell[size][size];
-        for (int r=0; r<size; r++) {
-            for (int c=0; c<size; c++) {
-                gridCopy[r][c] = grid[r][c].getCopy();
-            }
-        }
-        return gridCopy;
+    protected int getMaxNeighbors() {
+        return myNeighborTable.getMaxNeighbors();
+    }
+
+
+    /**
+     * Return the neighbor table compiled for the current shape, neighbor configuration, edge type and size
+     * @return
+     */
+    protected NeighborTable getNeighborTable() {
+        return myNeighborTable;
+    }
+
+
+    /**
+     * Return a read-only view of the current generation so that it can interact with methods in other classes
+     * without being copied
+     * @return current generation
+     */
+    public GenerationView getCurrentGeneration() {
+        return currentGeneration;
+    }
+
+
+    /**
+     * Copy the current generation into planes owned by the caller, such as a snapshot that another thread draws from
+     * while this grid keeps stepping
+     * @param destination planes to overwrite, or null
+     * @return destination, or new planes if it was null or a different size
+     */
+    public StatePlanes copyCurrentGeneration(StatePlanes destination) {
+        if (destination == null || destination.getSize() != currentGeneration.getSize())
+            destination = new StatePlanes(currentGeneration.getSize());
+        destination.copyFrom(currentGeneration);
+        return destination;
     }
 
 
     /**
-     * Set grid to new grid passed as input
-     * @param cells
+     * Return the planes holding the current generation. Subclasses that apply their rules in place (one cell's update
+     * affects the cells updated after it) read and write these planes directly.
+     * @return current generation
      */
-    public void setGrid(Cell[][] cells){
-        grid = cells;
+    protected StatePlanes getCurrentPlanes() {
+        return currentGeneration;
+    }
+
+
+    /**
+     * Return the buffer that the next generation should be written into. Subclasses whose rules are synchronous read
+     * the current generation, write every cell of this buffer and then call swapGenerations(). Its contents are left
+     * over from an earlier generation until they are written.
+     * @return next generation buffer
+     */
+    protected StatePlanes getNextPlanes() {
+        if (nextGeneration == null)
+            nextGeneration = new StatePlanes(gridSize);
+        return nextGeneration;
+    }
+
+
+    /**
+     * Make the next generation buffer the current generation. The old current generation is reused as the next buffer,
+     * so stepping the grid never allocates or copies planes.
+     */
+    protected void swapGenerations() {
+        StatePlanes oldGeneration = currentGeneration;
+        currentGeneration = getNextPlanes();
+        nextGeneration = oldGeneration;
+    }
+
+
+    private void resetGenerations() {
+        currentGeneration = new StatePlanes(gridSize);
+        nextGeneration = null;
+        restartRandom();
+        gridChanged();
     }
 
 
@@ -371,6 +417,49 @@ public abstract class Grid {
         return gridSize;
     }
 
+    /**
+     * Whether the simulation runs in continuous time, where each call to updateCells() fires a batch of events
+     * instead of running one round
+     * @return false unless overridden
+     */
+    public boolean isEventDriven(){
+        return false;
+    }
+
+    /**
+     * Switch between running in rounds and in continuous time. Simulations without an event driven mode ignore this.
+     * @param eventDriven
+     */
+    public void setEventDriven(boolean eventDriven){
+    }
+
+    /**
+     * Pass every cell that changed during the last call to updateCells() to an action, so a display can redraw only
+     * those cells. A cell may be passed more than once. Grids that do not keep track of their changes return false
+     * without calling the action, and every cell has to be treated as changed.
+     * @param action
+     * @return whether the changed cells are known
+     */
+    public boolean forEachChangedCell(IntConsumer action){
+        return false;
+    }
+
+    /**
+     * Return the simulated time of an event driven simulation
+     * @return 0 unless overridden
+     */
+    public double getSimulatedTime(){
+        return 0;
+    }
+
+    /**
+     * Return the side length of a cell on screen
+     * @return
+     */
+    public double getCellSize(){
+        return cellSize;
+    }
+
     /**
      * Set size of the grid
      * @param gridSize grid is always square so this param specifies 1 side length
@@ -378,34 +467,120 @@ public abstract class Grid {
     public void setGridSize(int gridSize){
         this.gridSize = gridSize;
         cellSize = screenSize/gridSize;
-        grid = new Cell[gridSize][gridSize];
+        resetGenerations();
+        if (myCellShape != null)
+            compileNeighborTable();
+
+    }
+
 
+    /**
+     * Turn splitting large steps across the cores of the machine on or off (on by default). Only simulations whose
+     * steps can be split (such as synchronous rules) use it; the rest always run on one thread.
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        myParallelRange.setEnabled(parallel);
+    }
+
+    /**
+     * Set the smallest grid, in cells, whose steps are split across cores when running in parallel
+     * @param numCells
+     */
+    public void setParallelThreshold(int numCells) {
+        myParallelRange.setThreshold(numCells);
     }
 
+    /**
+     * Return the executor subclasses use to split their steps into bands that run in parallel
+     * @return
+     */
+    protected ParallelRange getParallelRange() {
+        return myParallelRange;
+    }
+
+
+    /**
+     * Fix the seed of the random values, so every run from the same configuration gives the same result no matter
+     * how many threads it runs on. Without a seed, every new configuration picks a fresh one.
+     * @param seed
+     */
+    public void setSeed(long seed){
+        myRandom = new CounterRandom(seed);
+        mySeedFixed = true;
+        myStep = 0;
+    }
+
+    /**
+     * Return the seed of the current run, which can be passed to setSeed to repeat it
+     * @return
+     */
+    public long getSeed(){
+        return myRandom.getSeed();
+    }
+
+    // a new configuration starts the random values over from step 0
+    private void restartRandom(){
+        if (!mySeedFixed){
+            myRandom = new CounterRandom(ThreadLocalRandom.current().nextLong());
+        }
+        myStep = 0;
+    }
+
+    /**
+     * Move the random values on to the next step. Stochastic simulations call this at the start of updateCells so
+     * that every step draws new values.
+     */
+    protected void startStep(){
+        myStep++;
+    }
+
+    /**
+     * Return the number of steps since the configuration was set
+     * @return
+     */
+    protected long getStep(){
+        return myStep;
+    }
+
+    /**
+     * Return the random generator of the run, for simulations that key their values by something other than the
+     * current step or want to fill whole tiles at once
+     * @return
+     */
+    protected CounterRandom getRandom(){
+        return myRandom;
+    }
 
     /**
-     * Return in between 0 and bound-1 (inclusive)
+     * Return an integer between 0 and bound-1 (inclusive). The value only depends on the seed, the step, the cell and
+     * the draw number, so it is the same on any thread.
+     * @param index flat index of the cell the value is for
+     * @param draw number of the value among the values the cell draws during this step
      * @param bound
      * @return random integer
      */
-    public int getRandomInt(int bound){
-        return rand.nextInt(bound);
+    public int getRandomInt(int index, int draw, int bound){
+        return myRandom.nextInt(myStep, index, draw, bound);
     }
 
     /**
-     * Return a number picked from a uniform distribution between 0.0 and 1.0.
+     * Return a number picked from a uniform distribution between 0.0 and 1.0. The value only depends on the seed, the
+     * step, the cell and the draw number, so it is the same on any thread.
+     * @param index flat index of the cell the value is for
+     * @param draw number of the value among the values the cell draws during this step
      * @return random double
      */
-    public double getRandomDouble() {
-        return rand.nextDouble();
+    public double getRandomDouble(int index, int draw) {
+        return myRandom.nextDouble(myStep, index, draw);
     }
 
 
     //used for debugging before the visualization was up and running
     protected void printGrid() {
-        for (int r=0; r<grid.length; r++) {
-            for (int c=0; c<grid.length; c++) {
-                System.out.print(grid[r][c].getState());
+        for (int r=0; r<gridSize; r++) {
+            for (int c=0; c<gridSize; c++) {
+                System.out.print(currentGeneration.getState(currentGeneration.getIndex(r, c)));
             }
             System.out.println();
         }
@@ -0,0 +1,374 @@
+package GridCell;
+
+/**
+ * Game of Life engine for square cells with the full Moore neighborhood on an unbounded plane, using Gosper's HashLife
+ * algorithm. The plane is a quadtree whose nodes are canonicalized through a hash table, so identical regions anywhere
+ * in space or time are stored once. Every node memoizes its RESULT: its center half advanced 2^j generations. Because
+ * results are shared between all copies of a region, a call to advance can jump 2^j generations at a time and
+ * regular patterns like glider guns can be run for billions of generations.
+ *
+ * The hash table is bounded. When it grows past the node limit between two jumps, every node that cannot be reached
+ * from the current root is dropped along with the memoized results that point to dropped nodes.
+ */
+public class HashLife implements LifeEngine {
+    public static final int DEFAULT_MAX_NODES = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int BASE_LEVEL = 2;
+
+    private final int aliveState;
+    private final int deadState;
+    private final int birthCounts;
+    private final int survivalCounts;
+    private final int maxNodes;
+    private final Node deadCell;
+    private final Node aliveCell;
+    private Node[] emptyNodes = new Node[Long.SIZE];
+    private Node[] table = new Node[INITIAL_CAPACITY];
+    private int numNodes;
+    private int collectionThreshold;
+    private int nextId;
+    private int stepLog;
+    private Node root;
+    private long originRow;
+    private long originCol;
+    private long generation;
+
+    /**
+     * Create an engine where every cell is dead
+     * @param aliveState state of a live cell in the grid
+     * @param deadState state of a dead cell in the grid
+     * @param birthCounts bit n is set if a dead cell with n live neighbors comes alive
+     * @param survivalCounts bit n is set if a live cell with n live neighbors stays alive
+     * @param maxNodes number of canonical nodes kept before unreachable nodes are collected, which is raised while
+     *                 more nodes than that are still reachable
+     */
+    public HashLife(int aliveState, int deadState, int birthCounts, int survivalCounts, int maxNodes) {
+        this.aliveState = aliveState;
+        this.deadState = deadState;
+        this.birthCounts = birthCounts;
+        this.survivalCounts = survivalCounts;
+        this.maxNodes = maxNodes;
+        collectionThreshold = maxNodes;
+        deadCell = new Node(nextId++, 0);
+        aliveCell = new Node(nextId++, 1);
+        emptyNodes[0] = deadCell;
+        root = getEmpty(BASE_LEVEL + 1);
+    }
+
+    private static class Node {
+        final int id;
+        final int level;
+        final long population;
+        final Node nw;
+        final Node ne;
+        final Node sw;
+        final Node se;
+        Node next;
+        Node result;
+        int resultStepLog;
+        boolean marked;
+
+        // a single cell
+        Node(int id, long population) {
+            this.id = id;
+            level = 0;
+            this.population = population;
+            nw = ne = sw = se = null;
+        }
+
+        Node(int id, Node nw, Node ne, Node sw, Node se) {
+            this.id = id;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+        }
+    }
+
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        int hash = nw.id;
+        hash = hash*31 + ne.id;
+        hash = hash*31 + sw.id;
+        hash = hash*31 + se.id;
+        return hash ^ (hash >>> 16);
+    }
+
+    // returns the canonical node with these four quadrants, creating it if it does not exist yet
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int bucket = hash(nw, ne, sw, se) & (table.length - 1);
+        for (Node node = table[bucket]; node != null; node = node.next) {
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se)
+                return node;
+        }
+        Node node = new Node(nextId++, nw, ne, sw, se);
+        node.next = table[bucket];
+        table[bucket] = node;
+        numNodes++;
+        if (numNodes > table.length*3/4)
+            resizeTable(table.length*2);
+        return node;
+    }
+
+    private void resizeTable(int capacity) {
+        Node[] oldTable = table;
+        table = new Node[capacity];
+        for (Node head : oldTable) {
+            Node node = head;
+            while (node != null) {
+                Node next = node.next;
+                int bucket = hash(node.nw, node.ne, node.sw, node.se) & (capacity - 1);
+                node.next = table[bucket];
+                table[bucket] = node;
+                node = next;
+            }
+        }
+    }
+
+    private Node getEmpty(int level) {
+        if (emptyNodes[level] == null) {
+            Node quadrant = getEmpty(level - 1);
+            emptyNodes[level] = join(quadrant, quadrant, quadrant, quadrant);
+        }
+        return emptyNodes[level];
+    }
+
+    @Override
+    public void load(GenerationView generation) {
+        int size = generation.getSize();
+        int level = BASE_LEVEL + 1;
+        while ((1L << level) < size) {
+            level++;
+        }
+        root = build(generation, level, 0, 0);
+        originRow = 0;
+        originCol = 0;
+        this.generation = 0;
+    }
+
+    private Node build(GenerationView generation, int level, int row, int col) {
+        int size = generation.getSize();
+        if (row >= size || col >= size)
+            return getEmpty(level);
+        if (level == 0)
+            return generation.getState(generation.getIndex(row, col)) == aliveState ? aliveCell : deadCell;
+        int half = 1 << (level - 1);
+        return join(build(generation, level - 1, row, col), build(generation, level - 1, row, col + half),
+                    build(generation, level - 1, row + half, col), build(generation, level - 1, row + half, col + half));
+    }
+
+    @Override
+    public void export(StatePlanes window) {
+        int size = window.getSize();
+        for (int index = 0; index < window.getNumCells(); index++) {
+            window.setState(index, deadState);
+        }
+        exportNode(window, root, originRow, originCol, size);
+    }
+
+    private void exportNode(StatePlanes window, Node node, long row, long col, int size) {
+        long width = 1L << node.level;
+        if (node.population == 0 || row >= size || col >= size || row + width <= 0 || col + width <= 0)
+            return;
+        if (node.level == 0) {
+            window.setState(window.getIndex((int) row, (int) col), aliveState);
+            return;
+        }
+        long half = width / 2;
+        exportNode(window, node.nw, row, col, size);
+        exportNode(window, node.ne, row, col + half, size);
+        exportNode(window, node.sw, row + half, col, size);
+        exportNode(window, node.se, row + half, col + half, size);
+    }
+
+    @Override
+    public void step() {
+        advance(1);
+    }
+
+    /**
+     * Advance the plane by any number of generations. The count is split into powers of two and each power is done
+     * in a single jump through the memoized results.
+     * @param generations
+     */
+    @Override
+    public void advance(long generations) {
+        for (int log = 0; generations > 0; log++, generations >>>= 1) {
+            if ((generations & 1) != 0)
+                jump(log);
+        }
+    }
+
+    private void jump(int log) {
+        if (numNodes > collectionThreshold)
+            collectGarbage();
+        stepLog = log;
+        while (root.level < log + BASE_LEVEL + 1 || !isCentered(root))
+            expandRoot();
+        // one more level of empty border so nothing that grows out of the center half is cut off
+        expandRoot();
+        long quarter = 1L << (root.level - 2);
+        root = getResult(root);
+        originRow += quarter;
+        originCol += quarter;
+        generation += 1L << log;
+    }
+
+    // every live cell is inside the center half of the node
+    private boolean isCentered(Node node) {
+        return node.population == node.nw.se.population + node.ne.sw.population + node.sw.ne.population + node.se.nw.population;
+    }
+
+    private void expandRoot() {
+        Node empty = getEmpty(root.level - 1);
+        root = join(join(empty, empty, empty, root.nw), join(empty, empty, root.ne, empty),
+                    join(empty, root.sw, empty, empty), join(root.se, empty, empty, empty));
+        long half = 1L << (root.level - 2);
+        originRow -= half;
+        originCol -= half;
+    }
+
+    // center half of the node advanced 2^min(stepLog, level-2) generations
+    private Node getResult(Node node) {
+        if (node.population == 0)
+            return getEmpty(node.level - 1);
+        if (node.result != null && node.resultStepLog == stepLog)
+            return node.result;
+        Node result;
+        if (node.level == BASE_LEVEL)
+            result = stepBase(node);
+        else
+            result = stepRecursive(node);
+        node.result = result;
+        node.resultStepLog = stepLog;
+        return result;
+    }
+
+    private Node stepRecursive(Node node) {
+        Node n00 = node.nw;
+        Node n01 = join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw);
+        Node n02 = node.ne;
+        Node n10 = join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne);
+        Node n11 = join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+        Node n12 = join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne);
+        Node n20 = node.sw;
+        Node n21 = join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw);
+        Node n22 = node.se;
+        // a full step advances both halves of the way, a shorter step only the second half
+        boolean fullStep = stepLog >= node.level - 2;
+        Node r00 = fullStep ? getResult(n00) : getCenter(n00);
+        Node r01 = fullStep ? getResult(n01) : getCenter(n01);
+        Node r02 = fullStep ? getResult(n02) : getCenter(n02);
+        Node r10 = fullStep ? getResult(n10) : getCenter(n10);
+        Node r11 = fullStep ? getResult(n11) : getCenter(n11);
+        Node r12 = fullStep ? getResult(n12) : getCenter(n12);
+        Node r20 = fullStep ? getResult(n20) : getCenter(n20);
+        Node r21 = fullStep ? getResult(n21) : getCenter(n21);
+        Node r22 = fullStep ? getResult(n22) : getCenter(n22);
+        return join(getResult(join(r00, r01, r10, r11)), getResult(join(r01, r02, r11, r12)),
+                    getResult(join(r10, r11, r20, r21)), getResult(join(r11, r12, r21, r22)));
+    }
+
+    private Node getCenter(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    // a 4x4 node advanced one generation by counting the neighbors of its four center cells
+    private Node stepBase(Node node) {
+        int bits = 0;
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                bits |= getBaseCell(node, row, col) << (row*4 + col);
+            }
+        }
+        return join(stepBaseCell(bits, 1, 1), stepBaseCell(bits, 1, 2), stepBaseCell(bits, 2, 1), stepBaseCell(bits, 2, 2));
+    }
+
+    private static int getBaseCell(Node node, int row, int col) {
+        Node quadrant = row < 2 ? (col < 2 ? node.nw : node.ne) : (col < 2 ? node.sw : node.se);
+        Node cell = (row & 1) == 0 ? ((col & 1) == 0 ? quadrant.nw : quadrant.ne) : ((col & 1) == 0 ? quadrant.sw : quadrant.se);
+        return (int) cell.population;
+    }
+
+    private Node stepBaseCell(int bits, int row, int col) {
+        int count = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                if (dr != 0 || dc != 0)
+                    count += (bits >>> ((row + dr)*4 + col + dc)) & 1;
+            }
+        }
+        boolean alive = ((bits >>> (row*4 + col)) & 1) != 0;
+        int counts = alive ? survivalCounts : birthCounts;
+        return (counts & (1 << count)) != 0 ? aliveCell : deadCell;
+    }
+
+    // marks everything reachable from the root, then rebuilds the table from the marked nodes only; collections only
+    // run between jumps, so when most nodes are still reachable the next one waits until the table has doubled
+    private void collectGarbage() {
+        mark(root);
+        for (Node empty : emptyNodes) {
+            mark(empty);
+        }
+        Node[] oldTable = table;
+        table = new Node[oldTable.length];
+        numNodes = 0;
+        for (Node head : oldTable) {
+            Node node = head;
+            while (node != null) {
+                Node next = node.next;
+                if (node.marked) {
+                    int bucket = hash(node.nw, node.ne, node.sw, node.se) & (table.length - 1);
+                    node.next = table[bucket];
+                    table[bucket] = node;
+                    numNodes++;
+                }
+                node = next;
+            }
+        }
+        for (Node head : table) {
+            for (Node node = head; node != null; node = node.next) {
+                if (node.result != null && !node.result.marked)
+                    node.result = null;
+            }
+        }
+        for (Node head : table) {
+            for (Node node = head; node != null; node = node.next) {
+                node.marked = false;
+            }
+        }
+        collectionThreshold = Math.max(maxNodes, 2*numNodes);
+    }
+
+    private void mark(Node node) {
+        if (node == null || node.level == 0 || node.marked)
+            return;
+        node.marked = true;
+        mark(node.nw);
+        mark(node.ne);
+        mark(node.sw);
+        mark(node.se);
+    }
+
+    /**
+     * @return number of generations advanced since the last load
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return number of live cells on the whole plane
+     */
+    public long getPopulation() {
+        return root.population;
+    }
+
+    /**
+     * @return number of canonical nodes currently in the hash table
+     */
+    public int getNumNodes() {
+        return numNodes;
+    }
+}
@@ -0,0 +1,58 @@
+package GridCell;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A specialized way of stepping a two state Game of Life-like grid that keeps its own representation of the cells.
+ * The grid loads its current generation into the engine, steps the engine and exports the result back into its planes.
+ */
+public interface LifeEngine {
+
+    /**
+     * Replace the engine's cells with a generation of the grid
+     * @param generation
+     */
+    void load(GenerationView generation);
+
+    /**
+     * Compute the next generation
+     */
+    void step();
+
+    /**
+     * Compute the generation a number of steps ahead. Engines that can skip ahead faster than one step at a time
+     * override this.
+     * @param generations
+     */
+    default void advance(long generations) {
+        for (long generation = 0; generation < generations; generation++) {
+            step();
+        }
+    }
+
+    /**
+     * Write the cells of the engine that fall inside the grid into its planes, with the grid's top left cell at
+     * row 0, col 0
+     * @param window planes of the grid
+     */
+    void export(StatePlanes window);
+
+    /**
+     * Write only the cells that changed during the last step into the planes of the grid, which must still hold the
+     * generation before it. Engines that can find the changed cells cheaply override this.
+     * @param window planes of the grid
+     */
+    default void exportChanges(StatePlanes window) {
+        export(window);
+    }
+
+    /**
+     * Pass every cell of the grid that changed during the last step to an action. Engines that can find them cheaply
+     * override this.
+     * @param action receives flat indices of the grid's cells
+     * @return whether the changed cells are known
+     */
+    default boolean forEachChangedCell(IntConsumer action) {
+        return false;
+    }
+}
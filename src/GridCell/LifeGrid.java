@@ -1,9 +1,7 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.function.IntConsumer;
 
 /**
  * A Grid subclass that represents a John Conway's Game of Life
@@ -11,11 +9,16 @@ import java.util.HashMap;
  * explicit configured positions to make patterns such as the Glider.
  * @author Hunter Gregory
  */
-public class LifeGrid extends Grid {
+public class LifeGrid extends SynchronousGrid implements EnsembleRule {
     private static final int EMPTY = 1;
     private static final int POPULATED = 0;
+    private static final int BIRTH_COUNTS = 1 << 3;
+    private static final int SURVIVAL_COUNTS = (1 << 2) | (1 << 3);
+    private static final int NUM_MOORE_NEIGHBORS = 8;
 
-    private HashMap<Integer, Color> myStateColorMap;
+    private HashMap<Integer, Integer> myStateColorMap;
+    private LifeEngine engine;
+    private boolean changesKnown;
 
     /**
      * Create a LifeGrid
@@ -29,8 +32,8 @@ public class LifeGrid extends Grid {
     @Override
     public void initStateColorMap() {
         myStateColorMap = new HashMap<>();
-        myStateColorMap.put(EMPTY, Color.GREY);
-        myStateColorMap.put(POPULATED, Color.YELLOW);
+        myStateColorMap.put(EMPTY, ArgbColor.GREY);
+        myStateColorMap.put(POPULATED, ArgbColor.YELLOW);
         setStateColorMap(myStateColorMap);
     }
 
@@ -44,45 +47,113 @@ public class LifeGrid extends Grid {
         //no parameters for this game
     }
 
+    @Override
+    protected boolean supportsInfiniteEdges() {
+        return true;
+    }
+
+    @Override
+    protected void gridChanged() {
+        super.gridChanged();
+        engine = null;
+        changesKnown = false;
+    }
+
     @Override
     public void updateCells() {
-        Cell[][] newGrid = getGrid(); // this method returns a copy of the grid, so these two variables reference different cells
-        Cell[][] oldGrid = getGrid();
-
-        int size = oldGrid.length;
-        for (int r=0; r<size; r++) {
-            for (int c=0; c<size; c++) {
-                updateCell(oldGrid[r][c], newGrid[r][c], getNeighbors(r, c));
-                //System.out.println("for " + r + " and col " + c);
-            }
+        changesKnown = true;
+        if (getEngine() != null) {
+            engine.step();
+            engine.exportChanges(getCurrentPlanes());
+            return;
         }
-        setGrid(newGrid);
+        super.updateCells();
     }
 
-    private void updateCell(Cell oldCell, Cell newCell, ArrayList<Integer[]> neighborCoords) {
-        int numPopulatedNeighbors = getNumPopulatedNeighbors(neighborCoords);
+    @Override
+    protected void updateCell(StatePlanes oldCells, StatePlanes newCells, int index) {
+        newCells.setState(index, getNextState(oldCells.getState(index), countNeighbors(index, POPULATED)));
+    }
 
-        if (oldCell.getState() == EMPTY && numPopulatedNeighbors == 3) {
-            setCellState(newCell, POPULATED);
-            //System.out.println("populating the empty spot ");
+    /**
+     * Advance the grid any number of generations and only update the displayed cells once at the end. With infinite
+     * edges and square cells this jumps ahead through HashLife, so even billions of generations are cheap for
+     * regular patterns like glider guns.
+     * @param generations
+     */
+    public void advanceGenerations(long generations) {
+        if (getEngine() == null) {
+            for (long generation = 0; generation < generations; generation++) {
+                updateCells();
+            }
+            changesKnown = generations == 1;
+            return;
         }
-        else if (numPopulatedNeighbors <=1 || numPopulatedNeighbors >=4) {
-            setCellState(newCell, EMPTY);
-            //if (oldCell.getState() == POPULATED) System.out.println("emptying the populated spot ");
+        engine.advance(generations);
+        engine.export(getCurrentPlanes());
+        changesKnown = generations == 1;
+    }
+
+    // only the changes of a single step are tracked, so skipping ahead loses them
+    @Override
+    public boolean forEachChangedCell(IntConsumer action) {
+        if (!changesKnown)
+            return false;
+        if (engine != null)
+            return engine.forEachChangedCell(action);
+        return super.forEachChangedCell(action);
+    }
+
+    private LifeEngine getEngine() {
+        if (engine == null) {
+            engine = createEngine();
+            if (engine != null)
+                engine.load(getCurrentGeneration());
         }
+        return engine;
+    }
+
+    /**
+     * Pick a specialized engine for the configuration if there is one. With infinite edges the grid is a window onto
+     * an unbounded plane, which HashLife runs when the cells are square with every neighbor selected. Square cells with
+     * every neighbor selected on a bounded grid are packed 64 to a long.
+     * @return engine, or null if every cell should be updated one at a time
+     */
+    private LifeEngine createEngine() {
+        boolean fullMoore = getMyCellShape() == CELL_SHAPE.SQUARE && getNeighborTable().getMaxNeighbors() == NUM_MOORE_NEIGHBORS;
+        if (getEdgeType() == EDGE_TYPE.INFINITE && fullMoore)
+            return new HashLife(POPULATED, EMPTY, BIRTH_COUNTS, SURVIVAL_COUNTS, HashLife.DEFAULT_MAX_NODES);
+        if (getEdgeType() == EDGE_TYPE.INFINITE)
+            return new SparseLife(getMyCellShape(), getNeighborConfig(), this::getNextState, POPULATED, EMPTY);
+        if (fullMoore)
+            return new BitPackedLife(getGridSize(), getEdgeType() == EDGE_TYPE.TOROIDAL, POPULATED, EMPTY, BIRTH_COUNTS, SURVIVAL_COUNTS,
+                                     getParallelRange());
+        return null;
     }
 
-    private int getNumPopulatedNeighbors(ArrayList<Integer[]> neighborCoords) {
-        int numPopulatedNeighbors = 0;
-        for (Integer[] neighborCoord : neighborCoords) {
-            if (neighborCoord[2] == POPULATED) //gets the state from the (row, col, state) coordinate
-                numPopulatedNeighbors ++;
+    @Override
+    public int getCountedState() {
+        return POPULATED;
+    }
+
+    @Override
+    public void updateReplicas(Ensemble ensemble, int index, int[] neighborCounts) {
+        byte[] states = ensemble.getStates();
+        byte[] nextStates = ensemble.getNextStates();
+        int numReplicas = ensemble.getNumReplicas();
+        int offset = index*numReplicas;
+        for (int replica = 0; replica < numReplicas; replica++) {
+            nextStates[offset + replica] = (byte) getNextState(states[offset + replica], neighborCounts[replica]);
         }
-        return numPopulatedNeighbors;
     }
 
-    private void setCellState(Cell cell, int state) {
-        cell.setState(state);
-        cell.setColor(myStateColorMap.get(state));
+    private int getNextState(int state, int numPopulatedNeighbors) {
+        if (state == EMPTY && numPopulatedNeighbors == 3) {
+            return POPULATED;
+        }
+        else if (numPopulatedNeighbors <=1 || numPopulatedNeighbors >=4) {
+            return EMPTY;
+        }
+        return state;
     }
 }
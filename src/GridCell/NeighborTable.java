@@ -0,0 +1,247 @@
+package GridCell;
+
+/**
+ * Immutable table of the neighbors of every cell in a grid, compiled once from the cell shape, the selected neighbor
+ * configuration, the edge type and the grid size. Cells far enough from the edges find their neighbors by adding flat
+ * index offsets for their parity class. Cells near the edges have their neighbor indices resolved ahead of time
+ * (wrapped for toroidal edges, dropped when out of bounds for normal edges), so looking up neighbors never has to check
+ * the edge type. The table only stores per-class offsets and the thin ring of edge cells, so it takes O(size) memory.
+ */
+public class NeighborTable {
+    private final int size;
+    private final CELL_SHAPE shape;
+    private final EDGE_TYPE edgeType;
+    private final int[][] rowDeltas;
+    private final int[][] colDeltas;
+    private final int[][] offsets;
+    private final int maxNeighbors;
+    private final int reach;
+    private final boolean allEdgeCells;
+    private final int[] edgeStart;
+    private final int[] edgeNeighbors;
+
+    /**
+     * Compile the neighbor table for a grid
+     * @param shape shape of every cell
+     * @param neighborConfig selected neighbors, or [-1] for every possible neighbor
+     * @param edgeType how neighbors that fall off the grid are handled
+     * @param size grid is always square so this param specifies 1 side length
+     */
+    public NeighborTable(CELL_SHAPE shape, Integer[] neighborConfig, EDGE_TYPE edgeType, int size) {
+        this.size = size;
+        this.shape = shape;
+        this.edgeType = edgeType;
+        int numClasses = shape.getNumParityClasses();
+        rowDeltas = new int[numClasses][];
+        colDeltas = new int[numClasses][];
+        offsets = new int[numClasses][];
+        int most = 0;
+        int farthest = 0;
+        for (int parity = 0; parity < numClasses; parity++) {
+            rowDeltas[parity] = shape.getDeltaR(parity, neighborConfig);
+            colDeltas[parity] = shape.getDeltaC(parity, neighborConfig);
+            offsets[parity] = new int[rowDeltas[parity].length];
+            for (int k = 0; k < offsets[parity].length; k++) {
+                offsets[parity][k] = rowDeltas[parity][k]*size + colDeltas[parity][k];
+                farthest = Math.max(farthest, Math.max(Math.abs(rowDeltas[parity][k]), Math.abs(colDeltas[parity][k])));
+            }
+            most = Math.max(most, offsets[parity].length);
+        }
+        maxNeighbors = most;
+        reach = farthest;
+        allEdgeCells = size <= 2*reach;
+        int numEdgeCells = allEdgeCells ? size*size : 2*reach*size + (size - 2*reach)*2*reach;
+        edgeStart = new int[numEdgeCells + 1];
+        edgeNeighbors = new int[numEdgeCells * maxNeighbors];
+        resolveEdgeCells();
+    }
+
+    private void resolveEdgeCells() {
+        int slot = 0;
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (!isEdgeCell(row, col))
+                    continue;
+                edgeStart[slot] = count;
+                count = resolveNeighbors(row, col, count);
+                slot++;
+            }
+        }
+        edgeStart[slot] = count;
+    }
+
+    // cells are visited in row-major order, which is the same order getEdgeSlot numbers them in
+    private int resolveNeighbors(int row, int col, int count) {
+        int parity = shape.getParityClass(row, col);
+        for (int k = 0; k < rowDeltas[parity].length; k++) {
+            int neighborRow = row + rowDeltas[parity][k];
+            int neighborCol = col + colDeltas[parity][k];
+            if (edgeType == EDGE_TYPE.TOROIDAL) {
+                neighborRow = Math.floorMod(neighborRow, size);
+                neighborCol = Math.floorMod(neighborCol, size);
+            }
+            if (neighborRow >= 0 && neighborRow < size && neighborCol >= 0 && neighborCol < size) {
+                edgeNeighbors[count] = neighborRow*size + neighborCol;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isEdgeCell(int row, int col) {
+        return allEdgeCells || row < reach || row >= size - reach || col < reach || col >= size - reach;
+    }
+
+    private int getEdgeSlot(int row, int col) {
+        if (allEdgeCells || row < reach)
+            return row*size + col;
+        int sideStart = reach*size;
+        if (row >= size - reach)
+            return sideStart + (size - 2*reach)*2*reach + (row - (size - reach))*size + col;
+        int rowStart = sideStart + (row - reach)*2*reach;
+        if (col < reach)
+            return rowStart + col;
+        return rowStart + reach + col - (size - reach);
+    }
+
+    /**
+     * Fill a caller-owned buffer with the flat indices of the neighbors of a cell, in clockwise order
+     * @param index flat index of the cell
+     * @param buffer array of length at least getMaxNeighbors()
+     * @return number of neighbors written into the buffer
+     */
+    public int getNeighbors(int index, int[] buffer) {
+        int row = index / size;
+        int col = index - row*size;
+        if (isEdgeCell(row, col)) {
+            int slot = getEdgeSlot(row, col);
+            int start = edgeStart[slot];
+            int count = edgeStart[slot + 1] - start;
+            System.arraycopy(edgeNeighbors, start, buffer, 0, count);
+            return count;
+        }
+        int[] cellOffsets = offsets[shape.getParityClass(row, col)];
+        for (int k = 0; k < cellOffsets.length; k++) {
+            buffer[k] = index + cellOffsets[k];
+        }
+        return cellOffsets.length;
+    }
+
+    /**
+     * Count the neighbors of a cell that are in a given state
+     * @param index flat index of the cell
+     * @param generation generation to read neighbor states from
+     * @param state
+     * @return number of neighbors in the state
+     */
+    public int countNeighbors(int index, GenerationView generation, int state) {
+        int row = index / size;
+        int col = index - row*size;
+        int count = 0;
+        if (isEdgeCell(row, col)) {
+            int slot = getEdgeSlot(row, col);
+            for (int k = edgeStart[slot]; k < edgeStart[slot + 1]; k++) {
+                if (generation.getState(edgeNeighbors[k]) == state)
+                    count++;
+            }
+            return count;
+        }
+        int[] cellOffsets = offsets[shape.getParityClass(row, col)];
+        for (int k = 0; k < cellOffsets.length; k++) {
+            if (generation.getState(index + cellOffsets[k]) == state)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Call the visitor once for every neighbor of a cell, in clockwise order
+     * @param index flat index of the cell
+     * @param generation generation to read neighbor states from
+     * @param visitor
+     */
+    public void forEachNeighbor(int index, GenerationView generation, NeighborVisitor visitor) {
+        int row = index / size;
+        int col = index - row*size;
+        if (isEdgeCell(row, col)) {
+            int slot = getEdgeSlot(row, col);
+            for (int k = edgeStart[slot]; k < edgeStart[slot + 1]; k++) {
+                int neighbor = edgeNeighbors[k];
+                visitor.visit(neighbor, generation.getState(neighbor));
+            }
+            return;
+        }
+        int[] cellOffsets = offsets[shape.getParityClass(row, col)];
+        for (int k = 0; k < cellOffsets.length; k++) {
+            int neighbor = index + cellOffsets[k];
+            visitor.visit(neighbor, generation.getState(neighbor));
+        }
+    }
+
+    /**
+     * Fill a caller-owned buffer with the flat indices of every cell that has the given cell as one of its neighbors.
+     * Neighborhoods are not always symmetric (only some neighbors can be selected, and triangles point in different
+     * directions), so these are found by undoing every delta of every parity class and keeping the cells of that
+     * class. A cell that lists the given cell more than once is returned as many times.
+     * @param index flat index of the cell
+     * @param buffer array of length at least getMaxReverseNeighbors()
+     * @return number of cells written into the buffer
+     */
+    public int getReverseNeighbors(int index, int[] buffer) {
+        int row = index / size;
+        int col = index - row*size;
+        int count = 0;
+        for (int parity = 0; parity < rowDeltas.length; parity++) {
+            for (int k = 0; k < rowDeltas[parity].length; k++) {
+                int otherRow = row - rowDeltas[parity][k];
+                int otherCol = col - colDeltas[parity][k];
+                if (edgeType == EDGE_TYPE.TOROIDAL) {
+                    otherRow = Math.floorMod(otherRow, size);
+                    otherCol = Math.floorMod(otherCol, size);
+                }
+                else if (otherRow < 0 || otherRow >= size || otherCol < 0 || otherCol >= size) {
+                    continue;
+                }
+                if (shape.getParityClass(otherRow, otherCol) == parity) {
+                    buffer[count] = otherRow*size + otherCol;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return largest number of cells that can have one cell as their neighbor, which is the buffer length
+     *         getReverseNeighbors needs
+     */
+    public int getMaxReverseNeighbors() {
+        int most = 0;
+        for (int[] classDeltas : rowDeltas) {
+            most += classDeltas.length;
+        }
+        return most;
+    }
+
+    /**
+     * @return largest number of neighbors any cell can have
+     */
+    public int getMaxNeighbors() {
+        return maxNeighbors;
+    }
+
+    /**
+     * @return side length of the grid the table was compiled for
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return largest row or column distance between a cell and one of its neighbors
+     */
+    public int getReach() {
+        return reach;
+    }
+}
@@ -0,0 +1,16 @@
+package GridCell;
+
+/**
+ * Callback used to look at the neighbors of a cell one at a time without building a list of them.
+ * Implementations are usually kept in a field and reused, so visiting neighbors allocates nothing.
+ */
+@FunctionalInterface
+public interface NeighborVisitor {
+
+    /**
+     * Called once for each neighbor of a cell
+     * @param neighborIndex flat index of the neighbor
+     * @param neighborState state of the neighbor
+     */
+    void visit(int neighborIndex, int neighborState);
+}
@@ -0,0 +1,141 @@
+package GridCell;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range of work items (cells, rows or tiles) into contiguous bands and runs the bands on a ForkJoinPool,
+ * returning once every band is done so the caller can use it as the barrier between two generations. The bands are
+ * fixed by the number of items and the parallelism of the pool, so a caller can keep per-band results in an array
+ * of length getNumBands(). Work below the size threshold, or with parallelism turned off, runs as a single band on the
+ * calling thread.
+ */
+public class ParallelRange {
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private boolean enabled = true;
+    private int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Body of a parallel loop
+     */
+    @FunctionalInterface
+    public interface Band {
+
+        /**
+         * Process the items from start (inclusive) to end (exclusive)
+         * @param band index of the band, between 0 and getNumBands()-1
+         * @param start
+         * @param end
+         */
+        void run(int band, int start, int end);
+    }
+
+    /**
+     * Create a range executor that splits work above the threshold across the pool
+     * @param pool
+     */
+    public ParallelRange(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param enabled whether large ranges are split across the pool
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return whether large ranges are split across the pool
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param numCells smallest amount of work, in cells, that is worth splitting across the pool
+     */
+    public void setThreshold(int numCells) {
+        threshold = numCells;
+    }
+
+    /**
+     * Whether a range is large enough to be split, no matter how many threads the pool has. Simulations whose parallel
+     * update gives different results than their sequential one choose between them with this, so that a seeded run
+     * gives the same result on any machine.
+     * @param numItems
+     * @param cellsPerItem how many cells each item covers
+     * @return whether the range is split when the pool has more than one thread
+     */
+    public boolean isSplittable(int numItems, int cellsPerItem) {
+        return enabled && (long) numItems*cellsPerItem >= threshold;
+    }
+
+    /**
+     * @param numItems
+     * @param cellsPerItem how many cells each item covers, so rows and cells share one threshold
+     * @return number of bands the range will be split into
+     */
+    public int getNumBands(int numItems, int cellsPerItem) {
+        if (!isSplittable(numItems, cellsPerItem) || pool.getParallelism() < 2)
+            return 1;
+        return Math.max(1, Math.min(numItems, pool.getParallelism()*BANDS_PER_THREAD));
+    }
+
+    /**
+     * Run the body over every item from 0 to numItems and wait for it to finish
+     * @param numItems
+     * @param cellsPerItem how many cells each item covers
+     * @param body
+     */
+    public void run(int numItems, int cellsPerItem, Band body) {
+        int numBands = getNumBands(numItems, cellsPerItem);
+        if (numBands == 1) {
+            body.run(0, 0, numItems);
+            return;
+        }
+        pool.invoke(new BandTask(body, numItems, numBands, 0, numBands));
+    }
+
+    /**
+     * @param band
+     * @param numItems
+     * @param numBands
+     * @return first item of the band, which is also one past the last item of the band before it
+     */
+    public static int getBandStart(int band, int numItems, int numBands) {
+        return (int) ((long) band*numItems/numBands);
+    }
+
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Band body;
+        private final int numItems;
+        private final int numBands;
+        private final int firstBand;
+        private final int lastBand;
+
+        BandTask(Band body, int numItems, int numBands, int firstBand, int lastBand) {
+            this.body = body;
+            this.numItems = numItems;
+            this.numBands = numBands;
+            this.firstBand = firstBand;
+            this.lastBand = lastBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastBand - firstBand == 1) {
+                body.run(firstBand, getBandStart(firstBand, numItems, numBands), getBandStart(lastBand, numItems, numBands));
+                return;
+            }
+            int middle = (firstBand + lastBand) >>> 1;
+            invokeAll(new BandTask(body, numItems, numBands, firstBand, middle),
+                      new BandTask(body, numItems, numBands, middle, lastBand));
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-
 import java.util.HashMap;
 
 /**
@@ -16,10 +14,10 @@ public class Percolation extends Grid{
 
     @Override
     public void initStateColorMap() {
-        HashMap<Integer, Color> colorMap = new HashMap<Integer,Color>();
-        colorMap.put(0,Color.BLACK);
-        colorMap.put(1,Color.WHITE);
-        colorMap.put(2,Color.AQUAMARINE);
+        HashMap<Integer, Integer> colorMap = new HashMap<Integer, Integer>();
+        colorMap.put(0,ArgbColor.BLACK);
+        colorMap.put(1,ArgbColor.WHITE);
+        colorMap.put(2,ArgbColor.AQUAMARINE);
         setStateColorMap(colorMap);
     }
 
@@ -1,11 +1,6 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-
-import java.util.ArrayList;
-import java.util.Currency;
 import java.util.HashMap;
-import java.util.Random;
 
 /**
  * Individual simulation created by inheriting from the Grid superclass. This simulation involves sharks, fish, and empty space. Sharks move about the grid looking for fish, and eat when they find them. Sharks reproduce after a certain number of cycles but can also die if they don't find a fish to eat in a certain number of cycles. Fish swim around and reproduce after a certain number of cycles. The most important part of this class is the updateCells() method which is broken into many different methods to make it more readable.
@@ -16,12 +11,19 @@ public class PredatorPrey extends Grid {
     public static final int EMPTY = 0;
     public static final int FISH = 1;
     public static final int SHARK = 2;
+    private static final int MIN_TILE_SIZE = 16;
+    private static final int MOVE_DRAW = 0;
+    private static final int BREED_DRAW = 1;
 
     private double fishBreedingAge;
     private double sharkBreedingAge;
     private double energyPerFish;
     private double sharkEnergy;
-    private HashMap<Integer, Color> stateColorMap;
+    private int[] animals;
+    private int[] animalsPerTile;
+    private SubLatticeSchedule schedule;
+    private final AnimalUpdater sequentialUpdater = new AnimalUpdater();
+    private final ThreadLocal<AnimalUpdater> updaters = ThreadLocal.withInitial(AnimalUpdater::new);
 
     /**
      * Create a PredatorPrey
@@ -37,11 +39,10 @@ public class PredatorPrey extends Grid {
      */
     @Override
     public void initStateColorMap(){
-        HashMap<Integer, Color > colorMap = new HashMap<Integer,Color>();
-        colorMap.put(EMPTY,Color.WHITE); //empty
-        colorMap.put(FISH,Color.GREEN); //fish
-        colorMap.put(SHARK,Color.BLUE); //shark
-        stateColorMap = colorMap;
+        HashMap<Integer, Integer> colorMap = new HashMap<Integer, Integer>();
+        colorMap.put(EMPTY,ArgbColor.WHITE); //empty
+        colorMap.put(FISH,ArgbColor.GREEN); //fish
+        colorMap.put(SHARK,ArgbColor.BLUE); //shark
         setStateColorMap(colorMap);
     }
 
@@ -63,217 +64,253 @@ public class PredatorPrey extends Grid {
         sharkBreedingAge = params[1];
         energyPerFish = params[2];
         sharkEnergy = params[3];
-        Cell[][] currentGrid = getGrid();
-        for (Cell[] row : currentGrid){
-            for (Cell cell : row){
-                if (cell.getState() == SHARK){
-                    cell.setEnergy(sharkEnergy);
-                }
+        StatePlanes currentCells = getCurrentPlanes();
+        for (int index = 0; index < currentCells.getNumCells(); index++){
+            if (currentCells.getState(index) == SHARK){
+                currentCells.setEnergy(index, (int) sharkEnergy);
             }
         }
-        setGrid(currentGrid);
     }
 
     /**
-     * Updates properties of cells to run simulation
+     * Updates properties of cells to run simulation. Every shark moves, then every fish. On large grids the animals
+     * are split into tiles that are processed in a checkerboard schedule, so animals that are too far apart to
+     * interact move at the same time on different cores.
      */
     @Override
     public void updateCells(){
-        Cell[][] currentGrid = getGrid();
-        updateEnergies(currentGrid);
-        updateAges(currentGrid);
-        ArrayList<Integer[]> sharks = findCellsWithState(currentGrid,SHARK);
-        for (Integer[] shark : sharks) {
-            updateSharkProperties(currentGrid,shark);
+        startStep();
+        StatePlanes currentCells = getCurrentPlanes();
+        int numCells = currentCells.getNumCells();
+        allocateBuffers(numCells);
+        ParallelRange parallelRange = getParallelRange();
+        parallelRange.run(numCells, 1, (band, start, end) -> updateEnergiesAndAges(currentCells, start, end));
+        if (parallelRange.isSplittable(numCells, 1) && getSchedule().getTilesPerSide() > 1){
+            updateInParallel(currentCells, SHARK);
+            updateInParallel(currentCells, FISH);
+            return;
         }
-        ArrayList<Integer[]> fish = findCellsWithState(currentGrid,FISH);
-        for (Integer[] fishy : fish) {
-            updateFishProperties(currentGrid,fishy);
+        int numSharks = findCellsWithState(currentCells,SHARK);
+        for (int k = 0; k < numSharks; k++) {
+            sequentialUpdater.updateSharkProperties(currentCells,animals[k]);
+        }
+        int numFish = findCellsWithState(currentCells,FISH);
+        for (int k = 0; k < numFish; k++) {
+            sequentialUpdater.updateFishProperties(currentCells,animals[k]);
         }
-        setGrid(currentGrid);
-
     }
 
-    private void updateSharkProperties(Cell[][] currentGrid, Integer[] shark){
-        boolean didKillShark = killShark(currentGrid, shark);
-        if (!didKillShark){
-            ArrayList<Integer[]> neighbors = getNeighbors(shark[0],shark[1]);
-            ArrayList<Integer[]> emptyNeighbors = new ArrayList<Integer[]>();
-            findEmptyNeighbors(neighbors,emptyNeighbors,currentGrid);
-            boolean didReproduce = reproduce(shark, currentGrid, emptyNeighbors, neighbors,SHARK,sharkBreedingAge);
-            if (!didReproduce){
-                feedMoveOrKillShark(neighbors,emptyNeighbors,currentGrid,shark);
-            }
-        }
+    @Override
+    protected void gridChanged(){
+        schedule = null;
     }
 
-    private void updateFishProperties(Cell[][] currentGrid, Integer[] fishy){
-        ArrayList<Integer[]> neighbors = getNeighbors(fishy[0],fishy[1]);
-        ArrayList<Integer[]> emptyNeighbors = new ArrayList<Integer[]>();
-        findEmptyNeighbors(neighbors,emptyNeighbors,currentGrid);
-        boolean didReproduce = reproduce(fishy, currentGrid, emptyNeighbors, neighbors,FISH,fishBreedingAge);
-        if (!didReproduce){
-            moveFish(emptyNeighbors,currentGrid,fishy);
+    private SubLatticeSchedule getSchedule(){
+        if (schedule == null){
+            // a move reads and writes cells up to reach away, so two animals interfere if they are within twice that
+            int minTileSize = Math.max(2*getNeighborTable().getReach() + 1, MIN_TILE_SIZE);
+            schedule = new SubLatticeSchedule(getGridSize(), minTileSize, getEdgeType() == EDGE_TYPE.TOROIDAL);
         }
+        return schedule;
     }
 
-
-    private void moveFish(ArrayList<Integer[]> emptyNeighbors, Cell[][] currentGrid, Integer[] fishy){
-        if (!emptyNeighbors.isEmpty()){
-            findEmptyAndSwitch(emptyNeighbors,currentGrid,fishy,FISH);
+    // every animal is listed in the slice of its tile before any of them moves, like the sequential update
+    private void updateInParallel(StatePlanes currentCells, int state){
+        SubLatticeSchedule tiles = getSchedule();
+        if (animalsPerTile == null || animalsPerTile.length != tiles.getNumTiles()){
+            animalsPerTile = new int[tiles.getNumTiles()];
         }
+        ParallelRange parallelRange = getParallelRange();
+        tiles.runAll(parallelRange, tile -> animalsPerTile[tile] = findCellsInTile(currentCells, tiles, tile, state));
+        tiles.run(parallelRange, tile -> {
+            AnimalUpdater updater = updaters.get();
+            int offset = tiles.getTileOffset(tile);
+            for (int k = 0; k < animalsPerTile[tile]; k++){
+                if (state == SHARK){
+                    updater.updateSharkProperties(currentCells, animals[offset + k]);
+                }else{
+                    updater.updateFishProperties(currentCells, animals[offset + k]);
+                }
+            }
+        });
     }
 
-    private void findEmptyNeighbors(ArrayList<Integer[]> neighbors, ArrayList<Integer[]> emptyNeighbors, Cell[][] currentGrid){
-        for (Integer[] neighbor : neighbors){
-            if (currentGrid[neighbor[0]][neighbor[1]].getState() == EMPTY) {
-                emptyNeighbors.add(neighbor);
+    private int findCellsInTile(StatePlanes cells, SubLatticeSchedule tiles, int tile, int state){
+        int offset = tiles.getTileOffset(tile);
+        int numFound = 0;
+        for (int row = tiles.getFirstRow(tile); row < tiles.getEndRow(tile); row++){
+            for (int col = tiles.getFirstCol(tile); col < tiles.getEndCol(tile); col++){
+                int index = cells.getIndex(row, col);
+                if (cells.getState(index) == state){
+                    animals[offset + numFound++] = index;
+                }
             }
         }
+        return numFound;
     }
 
+    private void allocateBuffers(int numCells){
+        if (animals == null || animals.length != numCells){
+            animals = new int[numCells];
+        }
+    }
 
-    private void feedMoveOrKillShark(ArrayList<Integer[]> neighbors, ArrayList<Integer[]> emptyNeighbors, Cell[][] currentGrid, Integer[] shark){
-        boolean foundFish = false;
-        for (Integer[] neighbor : neighbors){
-            if (currentGrid[neighbor[0]][neighbor[1]].getState() == FISH){
-                //eat fish and replenish energy
-                currentGrid[shark[0]][shark[1]].setEnergy(currentGrid[shark[0]][shark[1]].getEnergy()+energyPerFish);
-                currentGrid[neighbor[0]][neighbor[1]].setAge(0);
-                switchSpots(currentGrid,neighbor[0],neighbor[1],SHARK,shark[0],shark[1],EMPTY);
-                foundFish = true;
-            }else if (currentGrid[neighbor[0]][neighbor[1]].getState() == EMPTY){
-                emptyNeighbors.add(neighbor);
+    /**
+     * Moves, feeds and breeds one animal at a time. Each thread has its own updater so that the neighbor buffers are
+     * never shared.
+     */
+    private class AnimalUpdater {
+        private int[] neighbors = new int[0];
+        private int[] emptyNeighbors = new int[0];
+
+        private void allocateBuffers(){
+            if (neighbors.length != getMaxNeighbors()){
+                neighbors = new int[getMaxNeighbors()];
+                emptyNeighbors = new int[getMaxNeighbors()];
             }
         }
-        //set new age and move
-        if (!foundFish){
-            killOrMoveShark(currentGrid,shark,emptyNeighbors);
-        }
-    }
 
-    private void killOrMoveShark(Cell[][] currentGrid, Integer[] shark, ArrayList<Integer[]> emptyNeighbors){
-        if (currentGrid[shark[0]][shark[1]].getEnergy() <= 0){
-            setCellState(currentGrid,shark,EMPTY,0,0);
-        }else {
-            if (!emptyNeighbors.isEmpty()){
-                findEmptyAndSwitch(emptyNeighbors,currentGrid,shark,SHARK);
+        private void updateSharkProperties(StatePlanes currentCells, int shark){
+            allocateBuffers();
+            boolean didKillShark = killShark(currentCells, shark);
+            if (!didKillShark){
+                int numNeighbors = getNeighbors(shark, neighbors);
+                int numEmpty = findEmptyNeighbors(numNeighbors,currentCells);
+                boolean didReproduce = reproduce(shark, currentCells, numEmpty, SHARK, sharkBreedingAge);
+                if (!didReproduce){
+                    feedMoveOrKillShark(numNeighbors,currentCells,shark);
+                }
             }
         }
-    }
 
-    private void findEmptyAndSwitch(ArrayList<Integer[]> emptyNeighbors, Cell[][] currentGrid, Integer[] pos, int state){
-        Random rand = new Random();
-        Integer[] emptyCell = emptyNeighbors.get(rand.nextInt(emptyNeighbors.size()));
-        switchSpots(currentGrid,emptyCell[0],emptyCell[1],state,pos[0],pos[1],EMPTY);
-    }
+        private void updateFishProperties(StatePlanes currentCells, int fishy){
+            allocateBuffers();
+            int numNeighbors = getNeighbors(fishy, neighbors);
+            int numEmpty = findEmptyNeighbors(numNeighbors,currentCells);
+            boolean didReproduce = reproduce(fishy, currentCells, numEmpty, FISH, fishBreedingAge);
+            if (!didReproduce){
+                moveFish(numEmpty,currentCells,fishy);
+            }
+        }
 
-    private void setCellState(Cell[][] currentGrid, Integer[] pos, int state, double energy, int age){
-        currentGrid[pos[0]][pos[1]].setState(state);
-        currentGrid[pos[0]][pos[1]].setColor(stateColorMap.get(state));
-        currentGrid[pos[0]][pos[1]].setEnergy(energy);
-        currentGrid[pos[0]][pos[1]].setAge(age);
-    }
 
-    private boolean killShark(Cell[][] currentGrid, Integer[] shark){
-        boolean didKillShark = false;
-        if (currentGrid[shark[0]][shark[1]].getEnergy() <= 0){
-            didKillShark = true;
-            setCellState(currentGrid,shark,EMPTY,0,0);
+        private void moveFish(int numEmpty, StatePlanes currentCells, int fishy){
+            if (numEmpty > 0){
+                findEmptyAndSwitch(numEmpty,currentCells,fishy,FISH);
+            }
         }
-        return didKillShark;
-    }
 
-    private ArrayList<Integer[]> findCellsWithState(Cell[][] grid, int state){
-        ArrayList<Integer[]> cells = new ArrayList<>();
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid.length; j++) {
-                int myState = grid[i][j].getState();
-                if (myState == state) {
-                    Integer[] cell = {i, j, myState};
-                    cells.add(cell);
+        private int findEmptyNeighbors(int numNeighbors, StatePlanes currentCells){
+            int numEmpty = 0;
+            for (int k = 0; k < numNeighbors; k++){
+                if (currentCells.getState(neighbors[k]) == EMPTY) {
+                    emptyNeighbors[numEmpty++] = neighbors[k];
                 }
             }
+            return numEmpty;
         }
-        return cells;
-    }
 
-    private boolean reproduce(Integer[] animal, Cell[][] currentGrid, ArrayList<Integer[]> emptyNeighbors, ArrayList<Integer[]> neighbors, int state, double breedingAge){
-        boolean didReproduce = false;
-        if (currentGrid[animal[0]][animal[1]].getAge() >= breedingAge){
-            didReproduce = true;
-            for (Integer[] neighbor : neighbors){
-                if (currentGrid[neighbor[0]][neighbor[1]].getState() == EMPTY){
-                    emptyNeighbors.add(neighbor);
+
+        private void feedMoveOrKillShark(int numNeighbors, StatePlanes currentCells, int shark){
+            boolean foundFish = false;
+            for (int k = 0; k < numNeighbors; k++){
+                int neighbor = neighbors[k];
+                if (currentCells.getState(neighbor) == FISH){
+                    //eat fish and replenish energy
+                    currentCells.setEnergy(shark, currentCells.getEnergy(shark) + (int) energyPerFish);
+                    currentCells.setAge(neighbor, 0);
+                    switchSpots(currentCells,neighbor,SHARK,shark,EMPTY);
+                    foundFish = true;
                 }
             }
-            if (!emptyNeighbors.isEmpty()){
-                Random rand = new Random();
-                Integer[] spawnLocation = emptyNeighbors.get(rand.nextInt(emptyNeighbors.size()));
-                double energy = 0;
-                if (state == SHARK){
-                    energy = sharkEnergy;
+            //set new age and move
+            if (!foundFish){
+                killOrMoveShark(currentCells,shark,findEmptyNeighbors(numNeighbors,currentCells));
+            }
+        }
+
+        private void killOrMoveShark(StatePlanes currentCells, int shark, int numEmpty){
+            if (currentCells.getEnergy(shark) <= 0){
+                setCellState(currentCells,shark,EMPTY,0,0);
+            }else {
+                if (numEmpty > 0){
+                    findEmptyAndSwitch(numEmpty,currentCells,shark,SHARK);
                 }
-                setCellState(currentGrid,spawnLocation,state,energy,0);
-                emptyNeighbors.remove(spawnLocation);
-                currentGrid[animal[0]][animal[1]].setAge(0);
             }
         }
-        return didReproduce;
-    }
 
-    private void switchSpots(Cell[][] grid, int y1, int x1, int state1, int y2, int x2, int state2){
-        //switch energies
-        double cell1Energy = grid[y1][x1].getEnergy();
-        double cell2Energy = grid[y2][x2].getEnergy();
-        //switch ages
-        int cell1Age = grid[y1][x1].getAge();
-        int cell2Age = grid[y2][x2].getAge();
-        setCellState(grid,new Integer[]{y1,x1},state1,cell2Energy,cell2Age);
-        setCellState(grid,new Integer[]{y2,x2},state2,cell1Energy,cell1Age);
-    }
+        private void findEmptyAndSwitch(int numEmpty, StatePlanes currentCells, int pos, int state){
+            int emptyCell = emptyNeighbors[getRandomInt(pos, getDraw(state, MOVE_DRAW), numEmpty)];
+            switchSpots(currentCells,emptyCell,state,pos,EMPTY);
+        }
 
-    private void updateEnergies(Cell[][] temp){
-        for (Cell[] row : temp){
-            for (Cell cell : row){
-                if (cell.getState() == SHARK){
-                    cell.setEnergy(cell.getEnergy()-1);
+        private boolean reproduce(int animal, StatePlanes currentCells, int numEmpty, int state, double breedingAge){
+            boolean didReproduce = false;
+            if (currentCells.getAge(animal) >= breedingAge){
+                didReproduce = true;
+                if (numEmpty > 0){
+                    int spawnLocation = emptyNeighbors[getRandomInt(animal, getDraw(state, BREED_DRAW), numEmpty)];
+                    int energy = 0;
+                    if (state == SHARK){
+                        energy = (int) sharkEnergy;
+                    }
+                    setCellState(currentCells,spawnLocation,state,energy,0);
+                    currentCells.setAge(animal, 0);
                 }
             }
+            return didReproduce;
         }
     }
 
-    private void updateAges(Cell[][] temp){
-        for (Cell[] row : temp){
-            for (Cell cell : row){
-                if (cell.getState() == SHARK || cell.getState() == FISH){
-                    cell.setAge(cell.getAge()+1);
-                }
-            }
+    // sharks and fish draw from different numbers, since a fish can reach a cell a shark moved out of in the same step
+    private static int getDraw(int state, int action){
+        return 2*state + action;
+    }
+
+    private void setCellState(StatePlanes currentCells, int index, int state, int energy, int age){
+        currentCells.setState(index, state);
+        currentCells.setEnergy(index, energy);
+        currentCells.setAge(index, age);
+    }
+
+    private boolean killShark(StatePlanes currentCells, int shark){
+        boolean didKillShark = false;
+        if (currentCells.getEnergy(shark) <= 0){
+            didKillShark = true;
+            setCellState(currentCells,shark,EMPTY,0,0);
         }
+        return didKillShark;
     }
 
-    public void printEnergies(Cell[][] temp){
-        for (Cell[] row : temp){
-            for (Cell cell : row){
-                System.out.print(cell.getEnergy()+",");
+    private int findCellsWithState(StatePlanes cells, int state){
+        int numFound = 0;
+        for (int index = 0; index < cells.getNumCells(); index++) {
+            if (cells.getState(index) == state) {
+                animals[numFound++] = index;
             }
-            System.out.println();
         }
-        System.out.println();
-
+        return numFound;
     }
 
+    private void switchSpots(StatePlanes cells, int index1, int state1, int index2, int state2){
+        //switch energies
+        int cell1Energy = cells.getEnergy(index1);
+        int cell2Energy = cells.getEnergy(index2);
+        //switch ages
+        int cell1Age = cells.getAge(index1);
+        int cell2Age = cells.getAge(index2);
+        setCellState(cells,index1,state1,cell2Energy,cell2Age);
+        setCellState(cells,index2,state2,cell1Energy,cell1Age);
+    }
 
-    private void printAges(Cell[][] temp){
-        for (Cell[] row : temp){
-            for (Cell cell : row){
-                System.out.print(cell.getAge()+",");
+    private void updateEnergiesAndAges(StatePlanes temp, int start, int end){
+        for (int index = start; index < end; index++){
+            if (temp.getState(index) == SHARK){
+                temp.setEnergy(index, temp.getEnergy(index)-1);
+            }
+            if (temp.getState(index) == SHARK || temp.getState(index) == FISH){
+                temp.setAge(index, temp.getAge(index)+1);
             }
-            System.out.println();
         }
-//        System.out.println();
-
     }
 }
-
@@ -1,8 +1,5 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -17,13 +14,20 @@ import java.util.HashMap;
  * 'Age' corresponds to 'gradient' for cells in this sim.
  * @author Hunter Gregory
  */
-public class RPSGrid extends Grid {
+public class RPSGrid extends Grid implements EventDrivenRule {
     private static final int EMPTY = 0;
     private static final int ROCK = 1;
     private static final int PAPER = 2;
     private static final int SCISSORS = 3;
+    private static final int MIN_TILE_SIZE = 16;
 
     private int myMaxGradient;
+    private boolean eventDriven;
+    private EventScheduler scheduler;
+    private SubLatticeSchedule schedule;
+    private int[] order;
+    private int[] colorOrder;
+    private final ThreadLocal<int[]> neighborBuffers = ThreadLocal.withInitial(() -> new int[0]);
 
     /**
      * Create a Rocks Paper Scissors Grid
@@ -36,11 +40,11 @@ public class RPSGrid extends Grid {
 
     @Override
     public void initStateColorMap() {
-        HashMap<Integer, Color> colorMap = new HashMap<>();
-        colorMap.put(EMPTY,Color.WHITE);
-        colorMap.put(ROCK,Color.RED);
-        colorMap.put(PAPER, Color.GREEN);
-        colorMap.put(SCISSORS,Color.BLUE);
+        HashMap<Integer, Integer> colorMap = new HashMap<>();
+        colorMap.put(EMPTY,ArgbColor.WHITE);
+        colorMap.put(ROCK,ArgbColor.RED);
+        colorMap.put(PAPER, ArgbColor.GREEN);
+        colorMap.put(SCISSORS,ArgbColor.BLUE);
         setStateColorMap(colorMap);
     }
 
@@ -49,87 +53,221 @@ public class RPSGrid extends Grid {
 
     }
 
+    /**
+     * The only parameter is the max gradient
+     * @param params
+     */
     @Override
     public void setAdditionalParams(Double[] params) {
         myMaxGradient = (int) Math.round(params[0]);
+        scheduler = null;
     }
 
+    @Override
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+        scheduler = null;
+    }
+
+    /**
+     * Visits every cell once in a random order, and each visited cell picks a random neighbor to spread to or eat.
+     * The order is a permutation of every cell that is shuffled in place at the start of each step. On large grids
+     * the cells are split into tiles that are visited in a checkerboard schedule with the colors in a random order,
+     * so tiles too far apart to interact are visited at the same time on different cores, each in its own random order.
+     */
     @Override
     public void updateCells() {
-        Cell[][] newGrid = getGrid();
-        int width = newGrid.length;
-        int height = newGrid[0].length;
-
-        ArrayList<Integer[]> positions = getAllPositions(width, height);
-        for (int r=0; r<width; r++) {
-            for (int c=0; c<height; c++){
-                Integer[] coord = getRandomPosition(positions);
-                Cell currentCell = newGrid[coord[0]][coord[1]];
-                ArrayList<Integer[]> neighbors = getNeighbors(coord[0], coord[1]);
-                Integer[] randomNeighbor = neighbors.get(getRandomInt(neighbors.size()));
-                Cell neighborCell = newGrid[randomNeighbor[0]][randomNeighbor[1]];
-                //System.out.printf("old cell at row %d, col %d, and state %d ", coord[0], coord[1], currentCell.getState());
-                //System.out.printf("chose new cell at %d, %d, and oldstate %d but new state %d\n", randomNeighbor[ROW_INDEX], randomNeighbor[COL_INDEX],
-                //              randomNeighbor[STATE_INDEX], newGrid[randomNeighbor[ROW_INDEX]][randomNeighbor[COL_INDEX]].getState());
-
-                updateEmptyCell(currentCell, neighborCell);
-                updateNonEmptyCell(currentCell, neighborCell);
+        startStep();
+        StatePlanes cells = getCurrentPlanes();
+        int numCells = cells.getNumCells();
+        if (eventDriven) {
+            // as much work as a round, but only on cells that can change
+            getScheduler(cells).fireEvents(cells, numCells);
+            return;
+        }
+        if (order == null || order.length != numCells)
+            fillOrder(numCells);
+        if (getParallelRange().isSplittable(numCells, 1) && getSchedule().getTilesPerSide() > 1) {
+            updateInParallel(cells);
+            return;
+        }
+        shuffle(order, 0, numCells, 0);
+        int[] neighbors = getNeighborBuffer();
+        for (int k = 0; k < numCells; k++) {
+            updateCell(cells, order[k], neighbors);
+        }
+    }
 
+    @Override
+    protected void gridChanged() {
+        schedule = null;
+        order = null;
+        scheduler = null;
+    }
+
+    @Override
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    @Override
+    public double getSimulatedTime() {
+        return scheduler == null ? 0 : scheduler.getTime();
+    }
+
+    private EventScheduler getScheduler(StatePlanes cells) {
+        if (scheduler == null) {
+            scheduler = new EventScheduler(getNeighborTable(), this, getRandom());
+            scheduler.reset(cells);
+        }
+        return scheduler;
+    }
+
+    /**
+     * In continuous time every cell picks a random neighbor at rate 1, like a round visits every cell once. Only
+     * the picks that change something are events, so the rate of a cell is the share of its neighbors it can
+     * spread to, be colored by or eat.
+     * @param cells current generation
+     * @param index flat index of the cell
+     * @return
+     */
+    @Override
+    public double getRate(StatePlanes cells, int index) {
+        int[] neighbors = getNeighborBuffer();
+        int numNeighbors = getNeighbors(index, neighbors);
+        if (numNeighbors == 0)
+            return 0;
+        return (double) findActiveNeighbors(cells, index, neighbors, numNeighbors) / numNeighbors;
+    }
+
+    @Override
+    public int fireEvent(StatePlanes cells, int index, long event, int[] changed) {
+        int[] neighbors = getNeighborBuffer();
+        int numActive = findActiveNeighbors(cells, index, neighbors, getNeighbors(index, neighbors));
+        if (numActive == 0)
+            return 0;
+        int neighborCell = neighbors[getRandom().nextInt(event, index, 0, numActive)];
+        updateEmptyCell(cells, index, neighborCell);
+        updateNonEmptyCell(cells, index, neighborCell);
+        changed[0] = index;
+        changed[1] = neighborCell;
+        return 2;
+    }
+
+    // moves the neighbors a visit to the cell would change something with to the front of the buffer
+    private int findActiveNeighbors(StatePlanes cells, int cell, int[] neighbors, int numNeighbors) {
+        int numActive = 0;
+        for (int k = 0; k < numNeighbors; k++) {
+            int neighbor = neighbors[k];
+            if (shouldReplace(cells, cell, neighbor) || shouldReplace(cells, neighbor, cell)
+                    || canEatOther(cells, cell, neighbor)) {
+                neighbors[numActive++] = neighbor;
             }
         }
-        setGrid(newGrid);
+        return numActive;
+    }
+
+    private SubLatticeSchedule getSchedule() {
+        if (schedule == null) {
+            // a visit reads and writes one neighbor, so two visits interfere if they are within twice the reach
+            int minTileSize = Math.max(2*getNeighborTable().getReach() + 1, MIN_TILE_SIZE);
+            schedule = new SubLatticeSchedule(getGridSize(), minTileSize, getEdgeType() == EDGE_TYPE.TOROIDAL);
+        }
+        return schedule;
     }
 
-    private void updateEmptyCell(Cell emptyCell, Cell nonEmptyCell) {
-        if (shouldReplace(emptyCell, nonEmptyCell)) {
-            replaceState(emptyCell, nonEmptyCell.getState(), nonEmptyCell.getState() + 1);
-            System.out.println("colorwashed!");
+    // the cells of each tile are listed in the tile's own slice, and together the slices hold every cell once
+    private void fillOrder(int numCells) {
+        SubLatticeSchedule tiles = getSchedule();
+        order = new int[numCells];
+        int size = getGridSize();
+        for (int tile = 0; tile < tiles.getNumTiles(); tile++) {
+            int k = tiles.getTileOffset(tile);
+            for (int row = tiles.getFirstRow(tile); row < tiles.getEndRow(tile); row++) {
+                for (int col = tiles.getFirstCol(tile); col < tiles.getEndCol(tile); col++) {
+                    order[k++] = row*size + col;
+                }
+            }
+        }
+        colorOrder = new int[tiles.getNumColors()];
+        for (int color = 0; color < colorOrder.length; color++) {
+            colorOrder[color] = color;
         }
     }
 
-    private boolean shouldReplace(Cell emptyCell, Cell nonEmptyCell) {
-        return emptyCell.getState() == EMPTY
-                && nonEmptyCell.getState() != EMPTY
-                && nonEmptyCell.getAge() < myMaxGradient - 1;
+    private void updateInParallel(StatePlanes cells) {
+        SubLatticeSchedule tiles = getSchedule();
+        shuffle(colorOrder, 0, colorOrder.length, 1);
+        for (int color : colorOrder) {
+            tiles.runColor(getParallelRange(), color, tile -> {
+                int start = tiles.getTileOffset(tile);
+                int end = tiles.getTileOffset(tile + 1);
+                shuffle(order, start, end, 0);
+                int[] neighbors = getNeighborBuffer();
+                for (int k = start; k < end; k++) {
+                    updateCell(cells, order[k], neighbors);
+                }
+            });
+        }
     }
 
-    private void updateNonEmptyCell(Cell cell, Cell neighbor) {
-        if (shouldReplace(neighbor, cell)) {
-            replaceState(neighbor, cell.getState(), cell.getState() + 1);
-            System.out.println("spread my color!");
+    // Fisher-Yates shuffle of the slice from start to end, with the random values keyed by position in the array
+    private void shuffle(int[] values, int start, int end, int draw) {
+        for (int k = end - 1; k > start; k--) {
+            int other = start + getRandomInt(k, draw, k - start + 1);
+            int value = values[k];
+            values[k] = values[other];
+            values[other] = value;
         }
-        else if (canEatOther(cell, neighbor)) {
-            replaceState(neighbor, cell.getState(), 0);
-            System.out.println("munchin!");
+    }
+
+    private int[] getNeighborBuffer() {
+        int[] neighbors = neighborBuffers.get();
+        if (neighbors.length != getMaxNeighbors()) {
+            neighbors = new int[getMaxNeighbors()];
+            neighborBuffers.set(neighbors);
         }
+        return neighbors;
     }
 
-    private ArrayList<Integer[]> getAllPositions(int width, int height) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-        for (int r=0; r<width; r++) {
-            for (int c=0; c< height; c++) {
-                result.add(new Integer[]{r,c});
-            }
+    private void updateCell(StatePlanes cells, int currentCell, int[] neighbors) {
+        int numNeighbors = getNeighbors(currentCell, neighbors);
+        if (numNeighbors == 0)
+            return;
+        int neighborCell = neighbors[getRandomInt(currentCell, 2, numNeighbors)];
+        updateEmptyCell(cells, currentCell, neighborCell);
+        updateNonEmptyCell(cells, currentCell, neighborCell);
+    }
+
+    private void updateEmptyCell(StatePlanes cells, int emptyCell, int nonEmptyCell) {
+        if (shouldReplace(cells, emptyCell, nonEmptyCell)) {
+            replaceState(cells, emptyCell, cells.getState(nonEmptyCell), cells.getState(nonEmptyCell) + 1);
         }
-        return result;
     }
 
-    private Integer[] getRandomPosition(ArrayList<Integer[]> positions) {
-        int randomIndex = getRandomInt(positions.size());
-        Integer[] coords = positions.get(randomIndex);
-        positions.remove(randomIndex);
-        return coords;
+    private boolean shouldReplace(StatePlanes cells, int emptyCell, int nonEmptyCell) {
+        return cells.getState(emptyCell) == EMPTY
+                && cells.getState(nonEmptyCell) != EMPTY
+                && cells.getAge(nonEmptyCell) < myMaxGradient - 1;
+    }
+
+    private void updateNonEmptyCell(StatePlanes cells, int cell, int neighbor) {
+        if (shouldReplace(cells, neighbor, cell)) {
+            replaceState(cells, neighbor, cells.getState(cell), cells.getState(cell) + 1);
+        }
+        else if (canEatOther(cells, cell, neighbor)) {
+            replaceState(cells, neighbor, cells.getState(cell), 0);
+        }
     }
 
-    private void replaceState(Cell cell, int newState, int newAge) {
-        cell.setState(newState);
-        cell.setColor(getStateColorMap().get(newState));
-        cell.setAge(newAge);
+    private void replaceState(StatePlanes cells, int cell, int newState, int newAge) {
+        cells.setState(cell, newState);
+        cells.setAge(cell, newAge);
     }
 
-    private boolean canEatOther(Cell cell, Cell other) {
-        int currentState = cell.getState();
-        int otherState = other.getState();
+    private boolean canEatOther(StatePlanes cells, int cell, int other) {
+        int currentState = cells.getState(cell);
+        int otherState = cells.getState(other);
         return currentState == ROCK && otherState == SCISSORS ||
                 currentState == SCISSORS && otherState == PAPER ||
                 currentState == PAPER && otherState == ROCK;
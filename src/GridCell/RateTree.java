@@ -0,0 +1,88 @@
+package GridCell;
+
+/**
+ * A sum tree over the event rates of every cell. Each leaf holds the rate of one cell and each inner node holds the
+ * sum of its two children, so changing one rate and picking a cell with probability proportional to its rate both
+ * take time proportional to the log of the number of cells. Inner nodes are recomputed from their children instead
+ * of being adjusted by the difference, so rounding errors never build up over a long run.
+ */
+public class RateTree {
+    private final int numLeaves;
+    private final int firstLeaf;
+    private final double[] sums;
+
+    /**
+     * Create a tree with every rate at zero
+     * @param numLeaves number of cells
+     */
+    public RateTree(int numLeaves) {
+        this.numLeaves = numLeaves;
+        int capacity = 1;
+        while (capacity < numLeaves) {
+            capacity <<= 1;
+        }
+        firstLeaf = capacity;
+        sums = new double[2*capacity];
+    }
+
+    /**
+     * Set the rate of a leaf and update the sums above it
+     * @param leaf
+     * @param rate
+     */
+    public void setRate(int leaf, double rate) {
+        int node = firstLeaf + leaf;
+        sums[node] = rate;
+        for (node >>>= 1; node > 0; node >>>= 1) {
+            sums[node] = sums[2*node] + sums[2*node + 1];
+        }
+    }
+
+    /**
+     * Set every rate at once, which is faster than setting them one by one
+     * @param rates one rate per leaf
+     */
+    public void setRates(double[] rates) {
+        System.arraycopy(rates, 0, sums, firstLeaf, numLeaves);
+        for (int node = firstLeaf - 1; node > 0; node--) {
+            sums[node] = sums[2*node] + sums[2*node + 1];
+        }
+    }
+
+    /**
+     * @param leaf
+     * @return rate of the leaf
+     */
+    public double getRate(int leaf) {
+        return sums[firstLeaf + leaf];
+    }
+
+    /**
+     * @return sum of every rate
+     */
+    public double getTotalRate() {
+        return sums[1];
+    }
+
+    /**
+     * Find the leaf whose share of the total rate contains a target. A target drawn uniformly between 0 and the
+     * total rate picks each leaf with probability proportional to its rate.
+     * @param target between 0 (inclusive) and getTotalRate() (exclusive)
+     * @return index of the leaf, which always has a positive rate if the total rate is positive
+     */
+    public int find(double target) {
+        int node = 1;
+        while (node < firstLeaf) {
+            int left = 2*node;
+            // rounding can leave the target just past the left sum with nothing on the right
+            if (target < sums[left] || sums[left + 1] <= 0) {
+                node = left;
+            }
+            else {
+                target -= sums[left];
+                node = left + 1;
+            }
+        }
+        return node - firstLeaf;
+    }
+}
@@ -1,10 +1,8 @@
 package GridCell;
 
-import javafx.scene.paint.Color;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
  * This is a simulation that inherits from the Grid class. In this simulation red and blue people move about the grid until they become satisfied with their surroundings. To be satisfied, a certain number of their occupied neighbor cells must be of the same type that they are. The most important method in this class is updateCells() which defines the rules of the simulation. It is broken down into several smaller methods to be easier to read.
@@ -12,8 +10,24 @@ import java.util.Random;
  */
 
 public class Segregation extends Grid {
-
     private double happyPercent;
+    private final NeighborCounter neighborCounter = new NeighborCounter();
+    private int[] sameCounts;
+    private int[] occupiedCounts;
+    private int[] unhappy;
+    private int[] unhappySlots;
+    private int[] movers;
+    private int[] empty;
+    private int[] reverseNeighbors;
+    private int numUnhappy;
+    private int numEmpty;
+    private boolean countsValid;
+    private double countedHappyPercent;
+    private int[] moverStates;
+    private int[] affected;
+    private long[] affectedBits;
+    private int[] changedCells;
+    private int numChangedCells;
 
     /**
      * Create a Segregation
@@ -37,10 +51,10 @@ public class Segregation extends Grid {
      */
     @Override
     public void initStateColorMap(){
-        HashMap<Integer, Color > colorMap = new HashMap<Integer,Color>();
-        colorMap.put(0,Color.WHITE);
-        colorMap.put(1,Color.RED);
-        colorMap.put(2,Color.BLUE);
+        HashMap<Integer, Integer> colorMap = new HashMap<Integer, Integer>();
+        colorMap.put(0,ArgbColor.WHITE);
+        colorMap.put(1,ArgbColor.RED);
+        colorMap.put(2,ArgbColor.BLUE);
         setStateColorMap(colorMap);
     }
 
@@ -65,79 +79,258 @@ public class Segregation extends Grid {
     }
 
     /**
-     * Updates properties of cells to run simulation
+     * Updates properties of cells to run simulation. Every person who is unhappy at the start of the step moves to a
+     * random empty cell. The number of occupied and same type neighbors of every cell, and with them the set of
+     * unhappy people, are kept up to date as people move, so a step only costs as much as the people who move. When
+     * there are enough unhappy people to split across several threads, they all move at once instead.
      */
     @Override
     public void updateCells(){
-        Cell[][] currentGrid = getGrid();
-        ArrayList<Integer[]> unhappy = new ArrayList<Integer[]>();
-        ArrayList<Integer[]> empty = new ArrayList<Integer[]>();
-        for (int i = 0; i < currentGrid.length; i++){
-            for (int j = 0; j < currentGrid.length; j++){
-                int myState = currentGrid[i][j].getState();
-                determineHappiness(i, j, myState, unhappy, empty);
+        startStep();
+        numChangedCells = 0;
+        StatePlanes currentCells = getCurrentPlanes();
+        if (!countsValid || countedHappyPercent != happyPercent){
+            countNeighbors(currentCells);
+        }
+        int numMovers = numUnhappy;
+        System.arraycopy(unhappy, 0, movers, 0, numMovers);
+        if (getParallelRange().getNumBands(numMovers, 1) > 1){
+            moveInParallel(currentCells, numMovers);
+            return;
+        }
+        for (int k = 0; k < numMovers && numEmpty > 0; k++){
+            moveToRandomEmptyCell(currentCells, movers[k]);
+        }
+    }
+
+    @Override
+    protected void gridChanged(){
+        countsValid = false;
+    }
+
+    @Override
+    public boolean forEachChangedCell(IntConsumer action){
+        for (int k = 0; k < numChangedCells; k++){
+            action.accept(changedCells[k]);
+        }
+        return true;
+    }
+
+    // rebuilds every count and the unhappy and empty lists from scratch
+    private void countNeighbors(StatePlanes currentCells){
+        int numCells = currentCells.getNumCells();
+        allocateBuffers(numCells);
+        reverseNeighbors = new int[getNeighborTable().getMaxReverseNeighbors()];
+        numUnhappy = 0;
+        numEmpty = 0;
+        for (int index = 0; index < numCells; index++){
+            neighborCounter.reset(currentCells.getState(index));
+            forEachNeighbor(index, neighborCounter);
+            sameCounts[index] = neighborCounter.numSameState;
+            occupiedCounts[index] = neighborCounter.numOccupied;
+            unhappySlots[index] = -1;
+            if (currentCells.getState(index) == 0){
+                empty[numEmpty++] = index;
             }
+            updateHappiness(currentCells, index);
         }
-        moveUnhappyCells(unhappy,empty,currentGrid);
-        setGrid(currentGrid);
+        countsValid = true;
+        countedHappyPercent = happyPercent;
+    }
+
+    private void allocateBuffers(int numCells){
+        if (sameCounts != null && sameCounts.length == numCells){
+            return;
+        }
+        sameCounts = new int[numCells];
+        occupiedCounts = new int[numCells];
+        unhappy = new int[numCells];
+        unhappySlots = new int[numCells];
+        movers = new int[numCells];
+        empty = new int[numCells];
+        moverStates = new int[numCells];
+        affected = new int[numCells];
+        affectedBits = new long[(numCells + Long.SIZE - 1) / Long.SIZE];
+        changedCells = new int[2*numCells];
     }
 
     /**
-     * Determine if cells are happy and no longer want to move
-     * @param i row of the current cell
-     * @param j column of the current cell
-     * @param myState state of the current cell
-     * @param unhappy arraylist of all unhappy cells
-     * @param empty arraylist of all empty cells
+     * Move every unhappy person at once. The people who move and the empty cells are both shuffled, and the k-th
+     * person moves to the k-th empty cell. Once the empty cells run out, a person moves into the cell left by the
+     * person numEmpty places ahead of them, the way the sequential update reuses the cells people leave. Every person
+     * lands in a different cell, so the writes of different bands never overlap and no locks are needed, and the step
+     * always produces a permutation of the grid. The shuffles are the only random values and are keyed by position, so
+     * the result does not depend on the number of threads. Afterwards only the counts of the cells that changed and
+     * the cells next to them are recounted.
+     * @param currentCells current generation, updated in place as people move
+     * @param numMovers number of unhappy people, listed at the start of movers
      */
-    private void determineHappiness(int i, int j, int myState, ArrayList<Integer[]> unhappy, ArrayList<Integer[]> empty){
-        if (myState!= 0){
-            ArrayList<Integer[]> neighbors = getNeighbors(i,j);
-            int numSameState = 0;
-            int numOccupied = 0;
-            for (Integer[] cell : neighbors){
-                if (cell[2] == myState){
-                    numSameState++;
-                }
-                if (cell[2] != 0){
-                    numOccupied++;
-                }
+    private void moveInParallel(StatePlanes currentCells, int numMovers){
+        if (numEmpty == 0){
+            return;
+        }
+        ParallelRange parallelRange = getParallelRange();
+        shuffle(empty, numEmpty, 0);
+        shuffle(movers, numMovers, 1);
+        parallelRange.run(numMovers, 1, (band, start, end) -> {
+            for (int k = start; k < end; k++){
+                moverStates[k] = currentCells.getState(movers[k]);
+                currentCells.setState(movers[k], 0);
+            }
+        });
+        parallelRange.run(numMovers, 1, (band, start, end) -> {
+            for (int k = start; k < end; k++){
+                int destination = k < numEmpty ? empty[k] : movers[k - numEmpty];
+                currentCells.setState(destination, moverStates[k]);
+            }
+        });
+        // every mover's cell changed, and so did every empty cell that someone moved into
+        int numFilled = Math.min(numMovers, numEmpty);
+        System.arraycopy(movers, 0, changedCells, 0, numMovers);
+        System.arraycopy(empty, 0, changedCells, numMovers, numFilled);
+        numChangedCells = numMovers + numFilled;
+        // the filled cells are the first numFilled of the shuffled empty cells, and the last numFilled movers left
+        // cells that nobody moved into
+        System.arraycopy(movers, numMovers - numFilled, empty, 0, numFilled);
+        recountAroundChanges(currentCells);
+    }
+
+    // the counts of a cell only depend on its own state and the states of its neighbors, so they are recounted in
+    // parallel and only the unhappy set is updated one cell at a time
+    private void recountAroundChanges(StatePlanes currentCells){
+        int numAffected = 0;
+        for (int k = 0; k < numChangedCells; k++){
+            int cell = changedCells[k];
+            numAffected = addAffected(cell, numAffected);
+            int numReverse = getNeighborTable().getReverseNeighbors(cell, reverseNeighbors);
+            for (int n = 0; n < numReverse; n++){
+                numAffected = addAffected(reverseNeighbors[n], numAffected);
             }
-            if (numOccupied == 0){
-                unhappy.add(new Integer[]{i,j,myState});
-            }else if (((double)numSameState)/((double)numOccupied) < happyPercent){
-                unhappy.add(new Integer[]{i,j,myState});
+        }
+        getParallelRange().run(numAffected, 1, (band, start, end) -> {
+            NeighborCounter counter = new NeighborCounter();
+            for (int k = start; k < end; k++){
+                int index = affected[k];
+                counter.reset(currentCells.getState(index));
+                forEachNeighbor(index, counter);
+                sameCounts[index] = counter.numSameState;
+                occupiedCounts[index] = counter.numOccupied;
             }
-        }else{
-            empty.add(new Integer[]{i,j});
+        });
+        for (int k = 0; k < numAffected; k++){
+            affectedBits[affected[k] >>> 6] = 0L;
+            updateHappiness(currentCells, affected[k]);
+        }
+    }
+
+    private int addAffected(int index, int numAffected){
+        long bit = 1L << index;
+        if ((affectedBits[index >>> 6] & bit) != 0){
+            return numAffected;
+        }
+        affectedBits[index >>> 6] |= bit;
+        affected[numAffected] = index;
+        return numAffected + 1;
+    }
+
+    // Fisher-Yates shuffle of the first length cells, with the random values keyed by position in the array
+    private void shuffle(int[] cells, int length, int draw){
+        for (int k = length - 1; k > 0; k--){
+            int other = getRandomInt(k, draw, k + 1);
+            int cell = cells[k];
+            cells[k] = cells[other];
+            cells[other] = cell;
         }
     }
 
     /**
-     * Relocate cells that are unhappy to a random empty cell
-     * @param unhappy arraylist of unhappy cells
-     * @param empty arraylist of empty cells
-     * @param currentGrid copy of the current grid that gets updated on each iteration replaces the main grid
+     * Relocate a person to a random empty cell. The cell they leave takes the place of the chosen cell in the list of
+     * empty cells, so picking and replacing an empty cell takes constant time.
+     * @param currentCells current generation, updated in place as each cell moves
+     * @param person flat index of the person
      */
-    private void moveUnhappyCells(ArrayList<Integer[]> unhappy, ArrayList<Integer[]> empty, Cell[][] currentGrid){
-        while (!unhappy.isEmpty()){
-            Random rand = new Random();
-            //unhappy person and empty spot
-            Integer[] person = unhappy.remove(0);
-            int emptyIndex = rand.nextInt(empty.size());
-            Integer[] emptySpot = empty.get(emptyIndex);
-            empty.remove(emptyIndex);
-            //switch random empty spot
-            currentGrid[emptySpot[0]][emptySpot[1]].setState(person[2]);
-            currentGrid[emptySpot[0]][emptySpot[1]].setColor(getStateColorMap().get(person[2]));
-            currentGrid[person[0]][person[1]].setState(0);
-            currentGrid[person[0]][person[1]].setColor(getStateColorMap().get(0));
-            Integer[] vacatedSpot = {person[0],person[1]};
-            empty.add(vacatedSpot);
+    private void moveToRandomEmptyCell(StatePlanes currentCells, int person){
+        int emptyIndex = getRandomInt(person, 0, numEmpty);
+        int emptySpot = empty[emptyIndex];
+        empty[emptyIndex] = person;
+        changedCells[numChangedCells++] = person;
+        changedCells[numChangedCells++] = emptySpot;
+        int state = currentCells.getState(person);
+        currentCells.setState(person, 0);
+        updateNeighborsOf(currentCells, person, state, -1);
+        updateHappiness(currentCells, person);
+        currentCells.setState(emptySpot, state);
+        updateNeighborsOf(currentCells, emptySpot, state, 1);
+        neighborCounter.reset(state);
+        forEachNeighbor(emptySpot, neighborCounter);
+        sameCounts[emptySpot] = neighborCounter.numSameState;
+        updateHappiness(currentCells, emptySpot);
+    }
+
+    // a person of the given state arrived at (change 1) or left (change -1) the cell
+    private void updateNeighborsOf(StatePlanes currentCells, int index, int state, int change){
+        int numReverse = getNeighborTable().getReverseNeighbors(index, reverseNeighbors);
+        for (int k = 0; k < numReverse; k++){
+            int other = reverseNeighbors[k];
+            occupiedCounts[other] += change;
+            if (currentCells.getState(other) == state){
+                sameCounts[other] += change;
+            }
+            updateHappiness(currentCells, other);
         }
     }
 
+    /**
+     * Determine if cells are happy and no longer want to move, and add them to or remove them from the unhappy set
+     * @param currentCells
+     * @param index flat index of the current cell
+     */
+    private void updateHappiness(StatePlanes currentCells, int index){
+        boolean isUnhappy = currentCells.getState(index) != 0 && isUnhappy(index);
+        if (isUnhappy && unhappySlots[index] < 0){
+            unhappySlots[index] = numUnhappy;
+            unhappy[numUnhappy++] = index;
+        }else if (!isUnhappy && unhappySlots[index] >= 0){
+            int last = unhappy[--numUnhappy];
+            unhappy[unhappySlots[index]] = last;
+            unhappySlots[last] = unhappySlots[index];
+            unhappySlots[index] = -1;
+        }
+    }
 
+    private boolean isUnhappy(int index){
+        return isUnhappy(sameCounts[index], occupiedCounts[index]);
+    }
 
-}
+    private boolean isUnhappy(int sameCount, int occupiedCount){
+        if (occupiedCount == 0){
+            return true;
+        }
+        return ((double)sameCount)/((double)occupiedCount) < happyPercent;
+    }
+
+    /**
+     * Counts the occupied neighbors of a cell and how many of them are the same type as the cell
+     */
+    private static class NeighborCounter implements NeighborVisitor {
+        private int myState;
+        private int numSameState;
+        private int numOccupied;
+
+        private void reset(int state){
+            myState = state;
+            numSameState = 0;
+            numOccupied = 0;
+        }
 
+        @Override
+        public void visit(int neighborIndex, int neighborState){
+            if (neighborState == myState){
+                numSameState++;
+            }
+            if (neighborState != 0){
+                numOccupied++;
+            }
+        }
+    }
+}
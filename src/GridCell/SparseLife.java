@@ -0,0 +1,47 @@
+package GridCell;
+
+/**
+ * Game of Life engine for infinite edges. The grid is a window onto a ChunkedPlane, so patterns that leave the window
+ * keep evolving and can come back into it.
+ */
+public class SparseLife implements LifeEngine {
+    private final ChunkedPlane plane;
+    private final TotalisticRule rule;
+    private final int aliveState;
+
+    /**
+     * Create an engine where every cell is in the dead state
+     * @param shape shape of every cell
+     * @param neighborConfig selected neighbors, or [-1] for every possible neighbor
+     * @param rule
+     * @param aliveState state whose neighbors are counted
+     * @param deadState background state of the plane
+     */
+    public SparseLife(CELL_SHAPE shape, Integer[] neighborConfig, TotalisticRule rule, int aliveState, int deadState) {
+        plane = new ChunkedPlane(deadState, shape, neighborConfig);
+        this.rule = rule;
+        this.aliveState = aliveState;
+    }
+
+    @Override
+    public void load(GenerationView generation) {
+        plane.load(generation);
+    }
+
+    @Override
+    public void step() {
+        plane.step(rule, aliveState);
+    }
+
+    @Override
+    public void export(StatePlanes window) {
+        plane.export(window);
+    }
+
+    /**
+     * @return the unbounded plane the engine steps
+     */
+    public ChunkedPlane getPlane() {
+        return plane;
+    }
+}
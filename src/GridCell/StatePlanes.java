@@ -0,0 +1,222 @@
+package GridCell;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for every cell of a square grid. Instead of one Cell object per grid element, the state
+ * of each cell is kept in a flat byte plane indexed by row*size+col. The age and energy properties that only some
+ * simulations use are kept in int planes that are only allocated the first time a non-zero value is written, so a
+ * 4096x4096 Game of Life grid costs 16 MB instead of millions of Cell and Shape objects.
+ */
+public class StatePlanes implements GenerationView {
+    private final int size;
+    private final byte[] states;
+    private int[] ages;
+    private int[] energies;
+
+    /**
+     * Create planes for a size x size grid where every cell has state 0, age 0 and energy 0
+     * @param size grid is always square so this param specifies 1 side length
+     */
+    StatePlanes(int size) {
+        this.size = size;
+        states = new byte[size*size];
+    }
+
+    /**
+     * Return the side length of the grid
+     * @return
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Return the total number of cells stored in the planes
+     * @return
+     */
+    @Override
+    public int getNumCells() {
+        return states.length;
+    }
+
+    /**
+     * Return the flat index of a cell
+     * @param row
+     * @param col
+     * @return row*size+col
+     */
+    @Override
+    public int getIndex(int row, int col) {
+        return row*size + col;
+    }
+
+    /**
+     * Return the row of a flat index
+     * @param index
+     * @return
+     */
+    @Override
+    public int getRow(int index) {
+        return index / size;
+    }
+
+    /**
+     * Return the column of a flat index
+     * @param index
+     * @return
+     */
+    @Override
+    public int getCol(int index) {
+        return index % size;
+    }
+
+    /**
+     * Return state of cell
+     * @param index flat index of the cell
+     * @return
+     */
+    @Override
+    public int getState(int index) {
+        return states[index];
+    }
+
+    /**
+     * Set state of cell
+     * @param index flat index of the cell
+     * @param state integer representing state
+     */
+    void setState(int index, int state) {
+        states[index] = (byte) state;
+    }
+
+    /**
+     * Return age property of cell
+     * @param index flat index of the cell
+     * @return
+     */
+    @Override
+    public int getAge(int index) {
+        return ages == null ? 0 : ages[index];
+    }
+
+    /**
+     * Set age property of cell. The age plane is allocated the first time a non-zero age is written.
+     * @param index flat index of the cell
+     * @param age integer representing age
+     */
+    void setAge(int index, int age) {
+        if (ages == null) {
+            if (age == 0)
+                return;
+            allocateAges();
+        }
+        ages[index] = age;
+    }
+
+    // synchronized because cells of the same planes can be written from several threads during a parallel step
+    private synchronized void allocateAges() {
+        if (ages == null)
+            ages = new int[states.length];
+    }
+
+    /**
+     * Return energy property of cell
+     * @param index flat index of the cell
+     * @return
+     */
+    @Override
+    public int getEnergy(int index) {
+        return energies == null ? 0 : energies[index];
+    }
+
+    /**
+     * Set energy property of cell. The energy plane is allocated the first time a non-zero energy is written.
+     * @param index flat index of the cell
+     * @param energy integer representing energy
+     */
+    void setEnergy(int index, int energy) {
+        if (energies == null) {
+            if (energy == 0)
+                return;
+            allocateEnergies();
+        }
+        energies[index] = energy;
+    }
+
+    private synchronized void allocateEnergies() {
+        if (energies == null)
+            energies = new int[states.length];
+    }
+
+    /**
+     * Swap state, age and energy of two cells
+     * @param index1
+     * @param index2
+     */
+    void swap(int index1, int index2) {
+        byte state = states[index1];
+        states[index1] = states[index2];
+        states[index2] = state;
+        if (ages != null) {
+            int age = ages[index1];
+            ages[index1] = ages[index2];
+            ages[index2] = age;
+        }
+        if (energies != null) {
+            int energy = energies[index1];
+            energies[index1] = energies[index2];
+            energies[index2] = energy;
+        }
+    }
+
+    /**
+     * Whether a cell has the same state, age and energy in these planes and in other planes of the same size
+     * @param other
+     * @param index flat index of the cell
+     * @return
+     */
+    boolean isSameCell(StatePlanes other, int index) {
+        return states[index] == other.states[index] && getAge(index) == other.getAge(index)
+                && getEnergy(index) == other.getEnergy(index);
+    }
+
+    /**
+     * Set every cell to the given state and reset all ages and energies to 0
+     * @param state
+     */
+    void clear(int state) {
+        Arrays.fill(states, (byte) state);
+        ages = null;
+        energies = null;
+    }
+
+    /**
+     * @return copy of these planes
+     */
+    StatePlanes getCopy() {
+        StatePlanes copy = new StatePlanes(size);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Overwrite these planes with the contents of other planes of the same size
+     * @param other
+     */
+    void copyFrom(StatePlanes other) {
+        System.arraycopy(other.states, 0, states, 0, states.length);
+        ages = copyPlane(other.ages, ages);
+        energies = copyPlane(other.energies, energies);
+    }
+
+    private int[] copyPlane(int[] source, int[] destination) {
+        if (source == null)
+            return null;
+        if (destination == null)
+            return source.clone();
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination;
+    }
+}
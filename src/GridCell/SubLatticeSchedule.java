@@ -0,0 +1,189 @@
+package GridCell;
+
+/**
+ * Splits a square grid into rectangular tiles and colors them like a checkerboard, so that two tiles of the same color
+ * are always separated by at least one full tile. If every tile is at least twice as wide as the farthest distance a
+ * cell's update can read or write, then updates in different tiles of the same color can never touch the same cell,
+ * and all tiles of one color can be processed at the same time. The colors are processed one after another.
+ *
+ * With toroidal edges an odd number of tiles per side would put two tiles of the same color next to each other across
+ * the wrap, so the last row and column of tiles get a third color.
+ */
+public class SubLatticeSchedule {
+    private final int size;
+    private final int tilesPerSide;
+    private final int[] tileStarts;
+    private final int[] tileOffsets;
+    private final int[][] tilesByColor;
+
+    /**
+     * Body of a parallel loop over tiles
+     */
+    @FunctionalInterface
+    public interface Tile {
+
+        /**
+         * Process every cell of a tile that needs processing
+         * @param tile index of the tile
+         */
+        void run(int tile);
+    }
+
+    /**
+     * Create a schedule for a grid
+     * @param size grid is always square so this param specifies 1 side length
+     * @param minTileSize smallest side length of a tile, which should be more than twice the reach of an update
+     * @param toroidal whether tiles on opposite edges are next to each other
+     */
+    public SubLatticeSchedule(int size, int minTileSize, boolean toroidal) {
+        this.size = size;
+        tilesPerSide = Math.max(1, size / Math.max(1, minTileSize));
+        tileStarts = new int[tilesPerSide + 1];
+        for (int tile = 0; tile <= tilesPerSide; tile++) {
+            tileStarts[tile] = ParallelRange.getBandStart(tile, size, tilesPerSide);
+        }
+        int numTiles = tilesPerSide*tilesPerSide;
+        tileOffsets = new int[numTiles + 1];
+        for (int tile = 0; tile < numTiles; tile++) {
+            tileOffsets[tile + 1] = tileOffsets[tile] + getNumRows(tile)*getNumCols(tile);
+        }
+        int colorsPerSide = toroidal && tilesPerSide % 2 == 1 && tilesPerSide > 1 ? 3 : 2;
+        int[] numTilesOfColor = new int[colorsPerSide*colorsPerSide];
+        int[] tileColors = new int[numTiles];
+        for (int tile = 0; tile < numTiles; tile++) {
+            tileColors[tile] = getSideColor(tile / tilesPerSide, colorsPerSide)*colorsPerSide
+                    + getSideColor(tile % tilesPerSide, colorsPerSide);
+            numTilesOfColor[tileColors[tile]]++;
+        }
+        tilesByColor = new int[numTilesOfColor.length][];
+        for (int color = 0; color < tilesByColor.length; color++) {
+            tilesByColor[color] = new int[numTilesOfColor[color]];
+            numTilesOfColor[color] = 0;
+        }
+        for (int tile = 0; tile < numTiles; tile++) {
+            int color = tileColors[tile];
+            tilesByColor[color][numTilesOfColor[color]++] = tile;
+        }
+    }
+
+    private int getSideColor(int tileIndex, int colorsPerSide) {
+        if (colorsPerSide == 3 && tileIndex == tilesPerSide - 1)
+            return 2;
+        return tileIndex % 2;
+    }
+
+    /**
+     * Run the body on every tile, one color at a time. Tiles of the same color run in parallel when the range
+     * executor splits them.
+     * @param parallelRange
+     * @param body
+     */
+    public void run(ParallelRange parallelRange, Tile body) {
+        for (int color = 0; color < getNumColors(); color++) {
+            runColor(parallelRange, color, body);
+        }
+    }
+
+    /**
+     * Run the body on every tile of one color. Callers that want the colors in a different order, such as a random
+     * order on every step, call this once per color.
+     * @param parallelRange
+     * @param color between 0 and getNumColors()-1
+     * @param body
+     */
+    public void runColor(ParallelRange parallelRange, int color, Tile body) {
+        int[] tiles = tilesByColor[color];
+        if (tiles.length == 0)
+            return;
+        int cellsPerTile = size*size / getNumTiles();
+        parallelRange.run(tiles.length, cellsPerTile, (band, start, end) -> {
+            for (int k = start; k < end; k++) {
+                body.run(tiles[k]);
+            }
+        });
+    }
+
+    /**
+     * @return number of colors, which is 4 or 9
+     */
+    public int getNumColors() {
+        return tilesByColor.length;
+    }
+
+    /**
+     * Run the body on every tile at once, for work that only touches the cells inside each tile
+     * @param parallelRange
+     * @param body
+     */
+    public void runAll(ParallelRange parallelRange, Tile body) {
+        parallelRange.run(getNumTiles(), size*size / getNumTiles(), (band, start, end) -> {
+            for (int tile = start; tile < end; tile++) {
+                body.run(tile);
+            }
+        });
+    }
+
+    /**
+     * @return total number of tiles
+     */
+    public int getNumTiles() {
+        return tilesPerSide*tilesPerSide;
+    }
+
+    /**
+     * @return number of tiles along each side of the grid
+     */
+    public int getTilesPerSide() {
+        return tilesPerSide;
+    }
+
+    /**
+     * @param tile
+     * @return first row of the tile
+     */
+    public int getFirstRow(int tile) {
+        return tileStarts[tile / tilesPerSide];
+    }
+
+    /**
+     * @param tile
+     * @return one past the last row of the tile
+     */
+    public int getEndRow(int tile) {
+        return tileStarts[tile / tilesPerSide + 1];
+    }
+
+    /**
+     * @param tile
+     * @return first column of the tile
+     */
+    public int getFirstCol(int tile) {
+        return tileStarts[tile % tilesPerSide];
+    }
+
+    /**
+     * @param tile
+     * @return one past the last column of the tile
+     */
+    public int getEndCol(int tile) {
+        return tileStarts[tile % tilesPerSide + 1];
+    }
+
+    /**
+     * Tiles are numbered in row-major order and their cells are laid out one tile after another, so a per-cell array
+     * can be split into one slice per tile
+     * @param tile
+     * @return start of the tile's slice
+     */
+    public int getTileOffset(int tile) {
+        return tileOffsets[tile];
+    }
+
+    private int getNumRows(int tile) {
+        return getEndRow(tile) - getFirstRow(tile);
+    }
+
+    private int getNumCols(int tile) {
+        return getEndCol(tile) - getFirstCol(tile);
+    }
+}
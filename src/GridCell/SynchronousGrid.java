@@ -0,0 +1,153 @@
+package GridCell;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Super class for simulations whose rules are synchronous: the next state of a cell only depends on the current
+ * generation of the cell and its neighbors. Subclasses define how a single cell is updated and this class decides
+ * which cells need to be updated. A cell whose neighborhood did not change during the last step cannot change during
+ * this one, so after the first step only the cells that changed and the cells next to them are evaluated, and the cost of a
+ * step scales with the activity on the grid instead of its area. Rules where cells can change on their own (such as
+ * lightning striking a tree) opt out by overriding requiresFullEvaluation(). Large steps are split into bands of cells
+ * that are updated in parallel when the grid is set to run in parallel, so updateCell must be safe to call from several
+ * threads at once.
+ */
+public abstract class SynchronousGrid extends Grid {
+    private int[] changed;
+    private int numChanged;
+    private boolean frontierValid;
+    private int[] candidates;
+    private long[] queued;
+    private int[] reverseNeighbors;
+    private int[] bandChanged;
+
+    /**
+     * constructor
+     * @param gridSize
+     * @param screenSize
+     */
+    public SynchronousGrid(int gridSize, double screenSize) {
+        super(gridSize, screenSize);
+    }
+
+    /**
+     * Write the next generation of one cell. Every property of the cell (state, age and energy) that the simulation uses
+     * has to be written, since the next generation buffer still holds an older generation.
+     * @param oldCells current generation
+     * @param newCells next generation
+     * @param index flat index of the cell
+     */
+    protected abstract void updateCell(StatePlanes oldCells, StatePlanes newCells, int index);
+
+    /**
+     * Whether a cell can change even if nothing in its neighborhood changed, in which case every cell is evaluated
+     * on every step
+     * @return false unless overridden
+     */
+    protected boolean requiresFullEvaluation() {
+        return false;
+    }
+
+    @Override
+    protected void gridChanged() {
+        frontierValid = false;
+    }
+
+    @Override
+    public void updateCells() {
+        startStep();
+        StatePlanes oldCells = getCurrentPlanes();
+        StatePlanes newCells = getNextPlanes();
+        int numCells = oldCells.getNumCells();
+        allocateBuffers(numCells);
+        // past this many changed cells, walking their neighborhoods costs more than evaluating every cell
+        boolean evaluateAll = !frontierValid || requiresFullEvaluation()
+                || (long) numChanged*(getNeighborTable().getMaxReverseNeighbors() + 1) >= numCells;
+        int numItems = evaluateAll ? numCells : collectCandidates();
+        ParallelRange parallelRange = getParallelRange();
+        int numBands = parallelRange.getNumBands(numItems, 1);
+        if (bandChanged == null || bandChanged.length < numBands)
+            bandChanged = new int[numBands];
+        parallelRange.run(numItems, 1, (band, start, end) ->
+                bandChanged[band] = updateRange(oldCells, newCells, evaluateAll, start, end));
+        numChanged = collectChanged(numItems, numBands);
+        frontierValid = true;
+        swapGenerations();
+    }
+
+    // changed cells of a band are written to the start of its own part of the changed array, so bands never overlap
+    private int updateRange(StatePlanes oldCells, StatePlanes newCells, boolean evaluateAll, int start, int end) {
+        int count = 0;
+        for (int k = start; k < end; k++) {
+            int index = evaluateAll ? k : candidates[k];
+            updateCell(oldCells, newCells, index);
+            if (!newCells.isSameCell(oldCells, index)) {
+                changed[start + count] = index;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int collectChanged(int numItems, int numBands) {
+        int count = 0;
+        for (int band = 0; band < numBands; band++) {
+            System.arraycopy(changed, ParallelRange.getBandStart(band, numItems, numBands), changed, count, bandChanged[band]);
+            count += bandChanged[band];
+        }
+        return count;
+    }
+
+    // the cells that changed during the last step and every cell that has one of them as a neighbor, each listed once;
+    // these are not the neighbors of the changed cells when only some neighbors are selected
+    private int collectCandidates() {
+        int numCandidates = 0;
+        for (int k = 0; k < numChanged; k++) {
+            int cell = changed[k];
+            numCandidates = addCandidate(cell, numCandidates);
+            int numReverse = getNeighborTable().getReverseNeighbors(cell, reverseNeighbors);
+            for (int n = 0; n < numReverse; n++) {
+                numCandidates = addCandidate(reverseNeighbors[n], numCandidates);
+            }
+        }
+        for (int k = 0; k < numCandidates; k++) {
+            queued[candidates[k] >>> 6] = 0L;
+        }
+        return numCandidates;
+    }
+
+    private int addCandidate(int index, int numCandidates) {
+        long bit = 1L << index;
+        if ((queued[index >>> 6] & bit) != 0)
+            return numCandidates;
+        queued[index >>> 6] |= bit;
+        candidates[numCandidates] = index;
+        return numCandidates + 1;
+    }
+
+    private void allocateBuffers(int numCells) {
+        if (changed != null && changed.length == numCells)
+            return;
+        changed = new int[numCells];
+        candidates = new int[numCells];
+        queued = new long[(numCells + Long.SIZE - 1) / Long.SIZE];
+        reverseNeighbors = new int[getNeighborTable().getMaxReverseNeighbors()];
+        numChanged = 0;
+        frontierValid = false;
+    }
+
+    @Override
+    public boolean forEachChangedCell(IntConsumer action) {
+        for (int k = 0; k < numChanged; k++) {
+            action.accept(changed[k]);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of cells that changed during the last step
+     */
+    public int getNumChanged() {
+        return numChanged;
+    }
+}
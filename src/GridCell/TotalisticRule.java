@@ -0,0 +1,16 @@
+package GridCell;
+
+/**
+ * Rule where the next state of a cell only depends on its own state and on how many of its neighbors are in one
+ * particular state, such as the Game of Life
+ */
+@FunctionalInterface
+public interface TotalisticRule {
+
+    /**
+     * @param state current state of the cell
+     * @param count number of neighbors in the counted state
+     * @return next state of the cell
+     */
+    int getNextState(int state, int count);
+}
@@ -0,0 +1,241 @@
+package GridCell;
+
+/**
+ * Window of fixed size, in pixels, onto a grid that can be zoomed and panned. The window shows the region of the grid
+ * whose top left corner is at (left, top) in the cell units of CELL_SHAPE, scaled by a number of pixels per cell. It
+ * can never zoom out further than the whole grid, and never pans the grid out of the window. A CellRaster made for a
+ * viewport only looks up the cells inside the window, so zooming into a small region of a very large grid costs no
+ * more per frame than showing a small grid.
+ */
+public class Viewport {
+    private static final double MAX_PIXELS_PER_CELL = 64;
+
+    private final CELL_SHAPE shape;
+    private final int size;
+    private final double[] bounds;
+    private final int width;
+    private final int height;
+    private final double fitScale;
+    private double scale;
+    private double left;
+    private double top;
+
+    /**
+     * Create a window that is exactly as large as the whole grid drawn with cells of the given size
+     * @param shape shape of every cell
+     * @param size side length of the grid
+     * @param cellSize side length of a cell when zoomed all the way out, in pixels
+     */
+    public Viewport(CELL_SHAPE shape, int size, double cellSize) {
+        this(shape, size, getPixels(shape.getBounds(size), 0, cellSize), getPixels(shape.getBounds(size), 1, cellSize),
+                cellSize);
+    }
+
+    /**
+     * Create a window of the given size that fits the whole grid when zoomed all the way out
+     * @param shape shape of every cell
+     * @param size side length of the grid
+     * @param width width of the window in pixels
+     * @param height height of the window in pixels
+     */
+    public Viewport(CELL_SHAPE shape, int size, int width, int height) {
+        this(shape, size, width, height, Math.min(width/getExtent(shape.getBounds(size), 0),
+                height/getExtent(shape.getBounds(size), 1)));
+    }
+
+    private Viewport(CELL_SHAPE shape, int size, int width, int height, double fitScale) {
+        this.shape = shape;
+        this.size = size;
+        this.bounds = shape.getBounds(size);
+        this.width = width;
+        this.height = height;
+        this.fitScale = fitScale;
+        reset();
+    }
+
+    private static double getExtent(double[] bounds, int axis) {
+        return bounds[axis + 2] - bounds[axis];
+    }
+
+    private static int getPixels(double[] bounds, int axis, double cellSize) {
+        return Math.max(1, (int) Math.ceil(getExtent(bounds, axis)*cellSize));
+    }
+
+    /**
+     * Zoom all the way out, so the whole grid is in the window
+     */
+    public void reset() {
+        scale = fitScale;
+        left = bounds[0];
+        top = bounds[1];
+        clamp();
+    }
+
+    /**
+     * Zoom in or out while keeping the same point of the grid under a pixel of the window, such as the mouse cursor
+     * @param factor how much larger cells get, less than 1 to zoom out
+     * @param pixelX
+     * @param pixelY
+     */
+    public void zoom(double factor, double pixelX, double pixelY) {
+        double x = getCellX(pixelX);
+        double y = getCellY(pixelY);
+        scale = Math.max(fitScale, Math.min(Math.max(fitScale, MAX_PIXELS_PER_CELL), scale*factor));
+        left = x - pixelX/scale;
+        top = y - pixelY/scale;
+        clamp();
+    }
+
+    /**
+     * Move the grid along with the mouse
+     * @param deltaX pixels the grid moves to the right
+     * @param deltaY pixels the grid moves down
+     */
+    public void pan(double deltaX, double deltaY) {
+        left -= deltaX/scale;
+        top -= deltaY/scale;
+        clamp();
+    }
+
+    /**
+     * Move the window so a point of the grid is at its center
+     * @param x in cell units
+     * @param y in cell units
+     */
+    public void centerOn(double x, double y) {
+        left = x - getVisibleWidth()/2;
+        top = y - getVisibleHeight()/2;
+        clamp();
+    }
+
+    // a grid smaller than the window stays at its top left corner, a larger one always covers the whole window
+    private void clamp() {
+        left = clamp(left, getVisibleWidth(), 0);
+        top = clamp(top, getVisibleHeight(), 1);
+    }
+
+    private double clamp(double start, double visible, int axis) {
+        double extent = getExtent(bounds, axis);
+        if (visible >= extent)
+            return bounds[axis];
+        return Math.max(bounds[axis], Math.min(bounds[axis + 2] - visible, start));
+    }
+
+    /**
+     * @param pixelX horizontal position in the window, in pixels
+     * @return the same position on the grid, in cell units
+     */
+    public double getCellX(double pixelX) {
+        return left + pixelX/scale;
+    }
+
+    /**
+     * @param pixelY vertical position in the window, in pixels
+     * @return the same position on the grid, in cell units
+     */
+    public double getCellY(double pixelY) {
+        return top + pixelY/scale;
+    }
+
+    /**
+     * @param x horizontal position on the grid, in cell units
+     * @return the same position in the window, in pixels
+     */
+    public double getPixelX(double x) {
+        return (x - left)*scale;
+    }
+
+    /**
+     * @param y vertical position on the grid, in cell units
+     * @return the same position in the window, in pixels
+     */
+    public double getPixelY(double y) {
+        return (y - top)*scale;
+    }
+
+    /**
+     * @return whether the window shows only part of the grid
+     */
+    public boolean isZoomed() {
+        return scale > fitScale;
+    }
+
+    /**
+     * @return shape of every cell
+     */
+    public CELL_SHAPE getShape() {
+        return shape;
+    }
+
+    /**
+     * @return side length of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return width of the window in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the window in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return pixels per cell
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return left of the window, in cell units
+     */
+    public double getLeft() {
+        return left;
+    }
+
+    /**
+     * @return top of the window, in cell units
+     */
+    public double getTop() {
+        return top;
+    }
+
+    /**
+     * @return width of the window, in cell units
+     */
+    public double getVisibleWidth() {
+        return width/scale;
+    }
+
+    /**
+     * @return height of the window, in cell units
+     */
+    public double getVisibleHeight() {
+        return height/scale;
+    }
+
+    /**
+     * @return horizontal distance from the top left corner of the grid to the left of the window when zoomed all the
+     * way out, in pixels
+     */
+    public double getOffsetX() {
+        return bounds[0]*fitScale;
+    }
+
+    /**
+     * @return vertical distance from the top left corner of the grid to the top of the window when zoomed all the way
+     * out, in pixels
+     */
+    public double getOffsetY() {
+        return bounds[1]*fitScale;
+    }
+}
@@ -0,0 +1,165 @@
+package Simulation;
+
+import GridCell.GenerationView;
+import GridCell.Grid;
+import GridCell.LifeGrid;
+import XML.XMLException;
+import XML.XMLParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Runs a config file for a number of steps without JavaFX, so simulations can run on machines without a display.
+ * Prints the throughput and the number of cells in each state at the end, and can write the final grid to a file
+ * with one line per row and the states separated by spaces.
+ *
+ * Usage: BatchRunner config.xml steps [seed] [output file]
+ */
+public class BatchRunner {
+    private static final double DISPLAY_SIZE = 400.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Grid myGrid;
+    private final String[] myStateNames;
+
+    /**
+     * Load a config file
+     * @param xmlFile
+     * @param seed seed of the random values, or null for a fresh one
+     * @throws InstantiationException if the grid could not be created
+     * @throws XMLException if the file does not match any automaton schema
+     */
+    public BatchRunner(File xmlFile, Long seed) throws InstantiationException {
+        XMLParser parser = new XMLParser(false);
+        myGrid = new GridLoader(parser, DISPLAY_SIZE).load(xmlFile, seed);
+        myStateNames = parser.getStates();
+    }
+
+    /**
+     * Step the grid. A game of life grid skips ahead through all the steps at once, which HashLife does in far fewer
+     * than one step per generation when the edges are infinite.
+     * @param steps
+     * @return seconds the steps took
+     */
+    public double run(long steps) {
+        long start = System.nanoTime();
+        if (myGrid instanceof LifeGrid) {
+            ((LifeGrid) myGrid).advanceGenerations(steps);
+            return (System.nanoTime() - start)/NANOS_PER_SECOND;
+        }
+        for (long step = 0; step < steps; step++) {
+            myGrid.updateCells();
+        }
+        return (System.nanoTime() - start)/NANOS_PER_SECOND;
+    }
+
+    /**
+     * @return number of cells in each state of the current generation
+     */
+    public int[] countStates() {
+        return countStates(myGrid.getCurrentGeneration(), myStateNames.length);
+    }
+
+    /**
+     * @param generation
+     * @param numStates
+     * @return number of cells in each state of the generation
+     */
+    public static int[] countStates(GenerationView generation, int numStates) {
+        int[] counts = new int[numStates];
+        for (int index = 0; index < generation.getNumCells(); index++) {
+            int state = generation.getState(index);
+            if (state < counts.length)
+                counts[state]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Write the current generation with one line per row and the states separated by spaces
+     * @param outputFile
+     * @throws IOException
+     */
+    public void writeGrid(File outputFile) throws IOException {
+        GenerationView generation = myGrid.getCurrentGeneration();
+        try (PrintWriter writer = new PrintWriter(outputFile)) {
+            for (int row = 0; row < generation.getSize(); row++) {
+                StringBuilder line = new StringBuilder();
+                for (int col = 0; col < generation.getSize(); col++) {
+                    if (col > 0)
+                        line.append(' ');
+                    line.append(generation.getState(generation.getIndex(row, col)));
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    /**
+     * @return grid being run
+     */
+    public Grid getGrid() {
+        return myGrid;
+    }
+
+    /**
+     * @return names of the states, in order
+     */
+    public String[] getStateNames() {
+        return myStateNames;
+    }
+
+    private void printReport(File xmlFile, long steps, double seconds) {
+        int numCells = myGrid.getGridSize()*myGrid.getGridSize();
+        System.out.println("config:     " + xmlFile.getPath());
+        System.out.println("grid:       " + myGrid.getGridSize() + "x" + myGrid.getGridSize() + " "
+                + myGrid.getMyCellShape() + " " + myGrid.getEdgeType());
+        System.out.println("seed:       " + myGrid.getSeed());
+        System.out.println("steps:      " + steps);
+        if (myGrid.isEventDriven())
+            System.out.println(String.format("time:       %.3f", myGrid.getSimulatedTime()));
+        System.out.println(String.format("seconds:    %.3f", seconds));
+        System.out.println(String.format("steps/sec:  %.1f", steps/seconds));
+        System.out.println(String.format("cells/sec:  %.0f", steps*(double) numCells/seconds));
+        int[] counts = countStates();
+        for (int state = 0; state < counts.length; state++) {
+            System.out.println(String.format("%-11s %d (%.1f%%)", myStateNames[state] + ":", counts[state],
+                    100.0*counts[state]/numCells));
+        }
+    }
+
+    /**
+     * Run a config file from the command line
+     * @param args config file, number of steps, and optionally a seed and an output file
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchRunner config.xml steps [seed] [output file]");
+            System.exit(1);
+        }
+        File xmlFile = new File(args[0]);
+        if (!xmlFile.isFile()) {
+            System.out.println("No such config file: " + xmlFile.getPath());
+            System.exit(1);
+        }
+        try {
+            long steps = Long.parseLong(args[1]);
+            Long seed = args.length > 2 ? Long.valueOf(args[2]) : null;
+            BatchRunner runner = new BatchRunner(xmlFile, seed);
+            double seconds = runner.run(steps);
+            runner.printReport(xmlFile, steps, seconds);
+            if (args.length > 3)
+                runner.writeGrid(new File(args[3]));
+        }
+        catch (NumberFormatException e) {
+            System.out.println("Steps and seed must be whole numbers: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (InstantiationException | IOException | XMLException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package Simulation;
+
+import GridCell.Ensemble;
+import GridCell.Grid;
+import XML.XMLException;
+import XML.XMLParser;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * Runs many replicas of a config file in lockstep without JavaFX, replica r with seed+r, for Monte Carlo studies of
+ * stochastic simulations. Prints the number of cells in each state of every replica, then the mean, standard deviation,
+ * min and max of each state over the ensemble. Replica r always ends in the same state as BatchRunner with seed+r.
+ *
+ * Usage: EnsembleRunner config.xml steps replicas [seed]
+ */
+public class EnsembleRunner {
+    private static final double DISPLAY_SIZE = 400.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Ensemble myEnsemble;
+    private final String[] myStateNames;
+    private final long mySeed;
+
+    /**
+     * Load a config file once per replica
+     * @param xmlFile
+     * @param numReplicas
+     * @param seed seed of the first replica
+     * @throws InstantiationException if a grid could not be created
+     * @throws IllegalArgumentException if the simulation can't be run as an ensemble
+     * @throws XMLException if the file does not match any automaton schema
+     */
+    public EnsembleRunner(File xmlFile, int numReplicas, long seed) throws InstantiationException {
+        XMLParser parser = new XMLParser(false);
+        GridLoader loader = new GridLoader(parser, DISPLAY_SIZE);
+        Grid template = loader.load(xmlFile, seed);
+        myEnsemble = new Ensemble(template, numReplicas);
+        myEnsemble.setReplica(0, template);
+        for (int replica = 1; replica < numReplicas; replica++) {
+            myEnsemble.setReplica(replica, loader.create(seed + replica, Collections.emptyMap()));
+        }
+        myStateNames = parser.getStates();
+        mySeed = seed;
+    }
+
+    /**
+     * Step every replica
+     * @param steps
+     * @return seconds the steps took
+     */
+    public double run(long steps) {
+        long start = System.nanoTime();
+        for (long step = 0; step < steps; step++) {
+            myEnsemble.step();
+        }
+        return (System.nanoTime() - start)/NANOS_PER_SECOND;
+    }
+
+    /**
+     * @return number of cells in each state of every replica, counts[replica][state]
+     */
+    public int[][] countStates() {
+        return myEnsemble.countStates(myStateNames.length);
+    }
+
+    /**
+     * @return ensemble being run
+     */
+    public Ensemble getEnsemble() {
+        return myEnsemble;
+    }
+
+    private void printReport(File xmlFile, long steps, double seconds) {
+        int numReplicas = myEnsemble.getNumReplicas();
+        System.out.println("config:     " + xmlFile.getPath());
+        System.out.println("replicas:   " + numReplicas + " (seeds " + mySeed + " to " + (mySeed + numReplicas - 1) + ")");
+        System.out.println("steps:      " + steps);
+        System.out.println(String.format("seconds:    %.3f", seconds));
+        System.out.println(String.format("cells/sec:  %.0f", steps*(double) myEnsemble.getNumCells()*numReplicas/seconds));
+        int[][] counts = countStates();
+        StringBuilder header = new StringBuilder("replica");
+        for (String state : myStateNames) {
+            header.append('\t').append(state);
+        }
+        System.out.println(header);
+        for (int replica = 0; replica < numReplicas; replica++) {
+            StringBuilder line = new StringBuilder().append(replica);
+            for (int count : counts[replica]) {
+                line.append('\t').append(count);
+            }
+            System.out.println(line);
+        }
+        for (int state = 0; state < myStateNames.length; state++) {
+            printSummary(myStateNames[state], counts, state);
+        }
+    }
+
+    private void printSummary(String stateName, int[][] counts, int state) {
+        double sum = 0;
+        double sumOfSquares = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int[] replicaCounts : counts) {
+            sum += replicaCounts[state];
+            sumOfSquares += (double) replicaCounts[state]*replicaCounts[state];
+            min = Math.min(min, replicaCounts[state]);
+            max = Math.max(max, replicaCounts[state]);
+        }
+        double mean = sum/counts.length;
+        double deviation = Math.sqrt(Math.max(0, sumOfSquares/counts.length - mean*mean));
+        System.out.println(String.format("%-11s mean %.1f, sd %.1f, min %d, max %d", stateName + ":", mean, deviation,
+                min, max));
+    }
+
+    /**
+     * Run an ensemble from the command line
+     * @param args config file, number of steps, number of replicas, and optionally the seed of the first replica
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: EnsembleRunner config.xml steps replicas [seed]");
+            System.exit(1);
+        }
+        File xmlFile = new File(args[0]);
+        if (!xmlFile.isFile()) {
+            System.out.println("No such config file: " + xmlFile.getPath());
+            System.exit(1);
+        }
+        try {
+            long steps = Long.parseLong(args[1]);
+            int numReplicas = Integer.parseInt(args[2]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+            EnsembleRunner runner = new EnsembleRunner(xmlFile, numReplicas, seed);
+            double seconds = runner.run(steps);
+            runner.printReport(xmlFile, steps, seconds);
+        }
+        catch (NumberFormatException e) {
+            System.out.println("Steps, replicas and seed must be whole numbers: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (InstantiationException | IllegalArgumentException | XMLException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
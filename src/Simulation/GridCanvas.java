@@ -0,0 +1,195 @@
+package Simulation;
+
+import GridCell.CELL_SHAPE;
+import GridCell.CellRaster;
+import GridCell.ColorPyramid;
+import GridCell.Grid;
+import GridCell.Viewport;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Displays a grid as a single image. Every frame draws a snapshot of the grid into the pixel buffer of a CellRaster
+ * and uploads the rectangle of the buffer that changed to the image at once, so the cost of a frame does not depend on
+ * the number of cells. The grid is shown through a Viewport: scrolling zooms in and out around the mouse, dragging
+ * pans, and a double click zooms all the way out again. A minimap shows the whole grid with a frame around the region
+ * in view, and clicking or dragging on it moves the view there. The rasters are only rebuilt when the grid changes
+ * size or shape, or the view moves. When the grid is zoomed out so far that a pixel covers several cells, the view and
+ * the minimap are drawn from a ColorPyramid instead, which is brought up to date with the tiles that changed once per
+ * snapshot and only while it is in use.
+ */
+class GridCanvas {
+    private static final double ZOOM_STEP = 1.25;
+
+    private final ImageView myView = new ImageView();
+    private final ImageView myMinimapView = new ImageView();
+    private final Rectangle myMinimapFrame = new Rectangle();
+    private final Group myMinimap = new Group(myMinimapView, myMinimapFrame);
+    private final int myMinimapSize;
+    private CELL_SHAPE myShape;
+    private int myGridSize;
+    private double myCellSize;
+    private Viewport myViewport;
+    private Viewport myMinimapViewport;
+    private CellRaster myRaster;
+    private CellRaster myMinimapRaster;
+    private WritableImage myImage;
+    private WritableImage myMinimapImage;
+    private ColorPyramid myPyramid;
+    private GridSnapshot mySnapshot;
+    private long myFrame;
+    private long myPyramidFrame = -1;
+    private boolean myBorders;
+    private double myDragX;
+    private double myDragY;
+
+    /**
+     * @param minimapSize side length of the minimap in pixels
+     */
+    GridCanvas(int minimapSize) {
+        myMinimapSize = minimapSize;
+        myMinimapFrame.setFill(Color.TRANSPARENT);
+        myMinimapFrame.setStroke(Color.RED);
+        myMinimapFrame.setMouseTransparent(true);
+        myView.setOnScroll(e -> zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1/ZOOM_STEP, e.getX(), e.getY()));
+        myView.setOnMousePressed(this::startDrag);
+        myView.setOnMouseDragged(this::pan);
+        myView.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2)
+                resetView();
+        });
+        myMinimapView.setOnMousePressed(this::centerOn);
+        myMinimapView.setOnMouseDragged(this::centerOn);
+    }
+
+    /**
+     * @return node that shows the grid
+     */
+    Node getNode() {
+        return myView;
+    }
+
+    /**
+     * @return node that shows the whole grid and the region in view
+     */
+    Node getMinimapNode() {
+        return myMinimap;
+    }
+
+    /**
+     * Draw a snapshot of a grid
+     * @param snapshot
+     * @param borders whether to draw cell borders
+     */
+    void draw(GridSnapshot snapshot, boolean borders) {
+        mySnapshot = snapshot;
+        myBorders = borders;
+        myFrame++;
+        if (snapshot.getCellShape() != myShape || snapshot.getGridSize() != myGridSize
+                || snapshot.getCellSize() != myCellSize)
+            resize(snapshot);
+        drawView();
+        render(myMinimapRaster, false);
+        upload(myMinimapRaster, myMinimapImage);
+    }
+
+    private void resize(GridSnapshot snapshot) {
+        myShape = snapshot.getCellShape();
+        myGridSize = snapshot.getGridSize();
+        myCellSize = snapshot.getCellSize();
+        myViewport = new Viewport(myShape, myGridSize, myCellSize);
+        myRaster = new CellRaster(myViewport);
+        myImage = new WritableImage(myRaster.getWidth(), myRaster.getHeight());
+        myView.setImage(myImage);
+        myView.setLayoutX(Grid.GRID_PADDING + myViewport.getOffsetX());
+        myView.setLayoutY(Grid.GRID_PADDING + myViewport.getOffsetY());
+        myMinimapViewport = new Viewport(myShape, myGridSize, myMinimapSize, myMinimapSize);
+        myMinimapRaster = new CellRaster(myMinimapViewport);
+        myMinimapImage = new WritableImage(myMinimapRaster.getWidth(), myMinimapRaster.getHeight());
+        myMinimapView.setImage(myMinimapImage);
+        myPyramid = new ColorPyramid(myGridSize);
+        myPyramidFrame = -1;
+    }
+
+    // the raster is made again whenever the view moved, which redraws every pixel of the window
+    private void drawView() {
+        if (!myRaster.fits(myViewport))
+            myRaster = new CellRaster(myViewport);
+        render(myRaster, myBorders);
+        upload(myRaster, myImage);
+        myMinimapFrame.setVisible(myViewport.isZoomed());
+        myMinimapFrame.setX(myMinimapViewport.getPixelX(myViewport.getLeft()));
+        myMinimapFrame.setY(myMinimapViewport.getPixelY(myViewport.getTop()));
+        myMinimapFrame.setWidth(myViewport.getVisibleWidth()*myMinimapViewport.getScale());
+        myMinimapFrame.setHeight(myViewport.getVisibleHeight()*myMinimapViewport.getScale());
+    }
+
+    private void render(CellRaster raster, boolean borders) {
+        int level = Math.min(raster.getDetailLevel(), myPyramid.getNumLevels());
+        if (level == 0) {
+            raster.render(mySnapshot.getGeneration(), mySnapshot.getStateColors(), borders, mySnapshot.getDirtyTiles());
+            return;
+        }
+        updatePyramid();
+        raster.render(myPyramid, level);
+    }
+
+    // the tiles of a snapshot only say what changed since the snapshot before it, so the pyramid is rebuilt if it
+    // missed a frame
+    private void updatePyramid() {
+        if (myPyramidFrame == myFrame)
+            return;
+        myPyramid.update(mySnapshot.getGeneration(), mySnapshot.getStateColors(),
+                myPyramidFrame == myFrame - 1 ? mySnapshot.getDirtyTiles() : null);
+        myPyramidFrame = myFrame;
+    }
+
+    private static void upload(CellRaster raster, WritableImage image) {
+        if (raster.getDirtyWidth() == 0 || raster.getDirtyHeight() == 0)
+            return;
+        int width = raster.getWidth();
+        int offset = raster.getDirtyY()*width + raster.getDirtyX();
+        image.getPixelWriter().setPixels(raster.getDirtyX(), raster.getDirtyY(), raster.getDirtyWidth(),
+                raster.getDirtyHeight(), PixelFormat.getIntArgbInstance(), raster.getPixels(), offset, width);
+    }
+
+    private void zoom(double factor, double x, double y) {
+        if (mySnapshot == null)
+            return;
+        myViewport.zoom(factor, x, y);
+        drawView();
+    }
+
+    private void startDrag(MouseEvent e) {
+        myDragX = e.getX();
+        myDragY = e.getY();
+    }
+
+    private void pan(MouseEvent e) {
+        if (mySnapshot == null)
+            return;
+        myViewport.pan(e.getX() - myDragX, e.getY() - myDragY);
+        startDrag(e);
+        drawView();
+    }
+
+    private void resetView() {
+        if (mySnapshot == null)
+            return;
+        myViewport.reset();
+        drawView();
+    }
+
+    private void centerOn(MouseEvent e) {
+        if (mySnapshot == null)
+            return;
+        myViewport.centerOn(myMinimapViewport.getCellX(e.getX()), myMinimapViewport.getCellY(e.getY()));
+        drawView();
+    }
+}
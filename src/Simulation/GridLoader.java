@@ -0,0 +1,121 @@
+package Simulation;
+
+import GridCell.Grid;
+import XML.CA_TYPE;
+import XML.XMLParser;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Creates grids from XML config files. Used by both the JavaFX simulator and the headless batch runner, so it must not
+ * touch any JavaFX classes.
+ */
+public class GridLoader {
+    private static final String SPECIFIED_LOCATIONS = "locations";
+    private static final String RANDOM_COMP = "random composition";
+
+    private final XMLParser myParser;
+    private final double myDisplaySize;
+
+    /**
+     * @param parser parser the config files are read with, which keeps the values of the last file loaded
+     * @param displaySize side length of the grid on screen
+     */
+    public GridLoader(XMLParser parser, double displaySize) {
+        myParser = parser;
+        myDisplaySize = displaySize;
+    }
+
+    /**
+     * Parse a config file and create its grid, with a fresh random seed
+     * @param xmlFile
+     * @return grid set to the configuration of the file
+     * @throws InstantiationException if the grid could not be created
+     */
+    public Grid load(File xmlFile) throws InstantiationException {
+        return load(xmlFile, null);
+    }
+
+    /**
+     * Parse a config file and create its grid
+     * @param xmlFile
+     * @param seed seed of the random values, or null for a fresh one
+     * @return grid set to the configuration of the file
+     * @throws InstantiationException if the grid could not be created
+     */
+    public Grid load(File xmlFile, Long seed) throws InstantiationException {
+        myParser.parseFile(xmlFile);
+        return create(seed, Collections.emptyMap());
+    }
+
+    /**
+     * Create a grid from the last file parsed, with some of its parameters or composition values replaced. Only reads
+     * from the parser, so several threads can create grids from the same parsed file at once.
+     * @param seed seed of the random values, or null for a fresh one
+     * @param overrides values to use instead of the ones in the file, by parameter or composition element name
+     * @return grid set to the configuration of the file
+     * @throws InstantiationException if the grid could not be created
+     */
+    public Grid create(Long seed, Map<String, Double> overrides) throws InstantiationException {
+        Grid grid = createGrid();
+        if (grid == null)
+            throw new InstantiationException("Creating the new grid didn't work. Problem with the constructor");
+        grid.setImmutables(myParser.getEdgeType(), myParser.getCellShape(), myParser.getNeighborConfig());
+        grid.setEventDriven(myParser.isEventDriven());
+        if (seed != null)
+            grid.setSeed(seed);
+        String configType = myParser.getConfigType();
+        String[] compositionNames = myParser.getCompositionNames();
+        if (configType.equals(RANDOM_COMP))
+            grid.setGridRandom(override(myParser.getRandomComposition(), compositionNames, overrides));
+        else if (configType.equals(SPECIFIED_LOCATIONS))
+            grid.setGridSpecific(myParser.getLocations());
+        else
+            grid.setGridRandomNum(override(myParser.getRandomNumbers(), compositionNames, overrides));
+        Double[] parameters = override(myParser.getParameters(), myParser.getParameterNames(), overrides);
+        if (parameters.length > 0)
+            grid.setAdditionalParams(parameters);
+        return grid;
+    }
+
+    private Double[] override(Double[] values, String[] names, Map<String, Double> overrides) {
+        for (int k = 0; k < values.length && k < names.length; k++) {
+            if (overrides.containsKey(names[k]))
+                values[k] = overrides.get(names[k]);
+        }
+        return values;
+    }
+
+    private Grid createGrid() {
+        CA_TYPE newType = myParser.getCAType();
+        Constructor<? extends Grid> constructor = newType.getConstructor();
+        try {
+            return constructor.newInstance(myParser.getGridSize(), myDisplaySize);
+        }
+        catch (InstantiationException | IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Set a grid back to the configuration of the last file loaded, keeping any composition changed with the sliders
+     * @param grid
+     */
+    public void setGridConfig(Grid grid) {
+        String configType = myParser.getConfigType();
+        if (configType.equals(RANDOM_COMP))
+            if (grid.getCurComposition() == null) {
+                grid.setGridRandom(myParser.getRandomComposition());
+            }
+            else{
+                grid.setGridRandom(grid.getCurComposition());
+            }
+        else if (configType.equals(SPECIFIED_LOCATIONS))
+            grid.setGridSpecific(myParser.getLocations());
+        else
+            grid.setGridRandomNum(myParser.getRandomNumbers());
+    }
+}
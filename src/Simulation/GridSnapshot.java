@@ -0,0 +1,95 @@
+package Simulation;
+
+import GridCell.CELL_SHAPE;
+import GridCell.DirtyTiles;
+import GridCell.GenerationView;
+import GridCell.Grid;
+import GridCell.StatePlanes;
+
+import java.util.Map;
+
+/**
+ * Copy of everything the display needs from one generation of a grid, so the display can draw it while the grid keeps
+ * stepping on another thread. Snapshots are reused, and only reallocate their planes when the grid size changes. Each
+ * snapshot also holds the tiles that changed since the last snapshot the display took.
+ */
+class GridSnapshot {
+    private StatePlanes myGeneration;
+    private DirtyTiles myDirtyTiles;
+    private CELL_SHAPE myShape;
+    private double myCellSize;
+    private Map<Integer, Integer> myStateColors;
+    private long myRound;
+    private boolean myEventDriven;
+    private double mySimulatedTime;
+
+    /**
+     * Copy the current generation of a grid. Only called on the thread that steps the grid.
+     * @param grid
+     * @param round number of rounds since the grid was configured
+     * @param dirtyTiles tiles that changed since the last snapshot the display took
+     */
+    void capture(Grid grid, long round, DirtyTiles dirtyTiles) {
+        myGeneration = grid.copyCurrentGeneration(myGeneration);
+        if (myDirtyTiles == null || myDirtyTiles.getSize() != dirtyTiles.getSize())
+            myDirtyTiles = new DirtyTiles(dirtyTiles.getSize());
+        myDirtyTiles.copyFrom(dirtyTiles);
+        myShape = grid.getMyCellShape();
+        myCellSize = grid.getCellSize();
+        myStateColors = grid.getStateColorMap();
+        myRound = round;
+        myEventDriven = grid.isEventDriven();
+        mySimulatedTime = grid.getSimulatedTime();
+    }
+
+    /**
+     * @return states of every cell
+     */
+    GenerationView getGeneration() {
+        return myGeneration;
+    }
+
+    /**
+     * @return tiles that changed since the last snapshot the display took
+     */
+    DirtyTiles getDirtyTiles() {
+        return myDirtyTiles;
+    }
+
+    /**
+     * @return side length of the grid
+     */
+    int getGridSize() {
+        return myGeneration.getSize();
+    }
+
+    /**
+     * @return shape of every cell
+     */
+    CELL_SHAPE getCellShape() {
+        return myShape;
+    }
+
+    /**
+     * @return side length of a cell on screen
+     */
+    double getCellSize() {
+        return myCellSize;
+    }
+
+    /**
+     * @return color of each state as 0xAARRGGBB
+     */
+    Map<Integer, Integer> getStateColors() {
+        return myStateColors;
+    }
+
+    /**
+     * @return label for the progress of the simulation, the round or the simulated time of event driven simulations
+     */
+    String getProgressLabel() {
+        if (myEventDriven)
+            return String.format("Time %.2f", mySimulatedTime);
+        return "Round " + myRound;
+    }
+}
@@ -0,0 +1,238 @@
+package Simulation;
+
+import GridCell.Grid;
+import XML.XMLException;
+import XML.XMLParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a config file at many points of its parameter space, between the min and max of the sliders in the file. Every
+ * point is an independent simulation with its own seed, so the points run at the same time on a fixed pool with one
+ * thread per processor, and each grid runs on a single thread. Points are only handed to the pool as threads free up,
+ * so a large design never queues all of its grids in memory at once. A separate writer thread streams one CSV line per
+ * point to the output as soon as the point finishes, so the lines are in the order the points finish and a long sweep
+ * can be watched or cut short without losing the points already done.
+ *
+ * Usage: ParameterSweep config.xml steps output.csv grid|lhs levels|points seed factor...
+ */
+public class ParameterSweep {
+    private static final double DISPLAY_SIZE = 400.0;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final String END_OF_RESULTS = "";
+
+    private final GridLoader myLoader;
+    private final String[] myStateNames;
+    private final SweepFactor[] myFactors;
+    private int myNumThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Load a config file and look up the range of every factor
+     * @param xmlFile
+     * @param factorNames tag names of the parameters or composition elements to vary
+     * @throws IllegalArgumentException if a factor is not a parameter or composition element of the file
+     * @throws XMLException if the file does not match any automaton schema
+     */
+    public ParameterSweep(File xmlFile, String[] factorNames) {
+        XMLParser parser = new XMLParser(false);
+        parser.parseFile(xmlFile);
+        myLoader = new GridLoader(parser, DISPLAY_SIZE);
+        myStateNames = parser.getStates();
+        LinkedHashMap<String, Double[]> sliders = parser.getSliderNamesAndValues();
+        myFactors = new SweepFactor[factorNames.length];
+        for (int f = 0; f < factorNames.length; f++) {
+            String name = factorNames[f];
+            if (!isSweepable(parser, name))
+                throw new IllegalArgumentException("Not a parameter or composition element of the config file: " + name);
+            Double[] range = sliders.get(name);
+            myFactors[f] = new SweepFactor(name, range[0], range[1]);
+        }
+    }
+
+    private boolean isSweepable(XMLParser parser, String name) {
+        if (!parser.getSliderNamesAndValues().containsKey(name))
+            return false;
+        for (String parameter : parser.getParameterNames()) {
+            if (parameter.equals(name))
+                return true;
+        }
+        for (String composition : parser.getCompositionNames()) {
+            if (composition.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param numThreads number of points that run at the same time
+     */
+    public void setNumThreads(int numThreads) {
+        myNumThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * @return factors in the order of the values of a point
+     */
+    public SweepFactor[] getFactors() {
+        return myFactors;
+    }
+
+    /**
+     * Run every point and write a header and one CSV line per point. The seed of a point is the seed plus the index of
+     * the point, so every point can be run again on its own.
+     * @param points values of the factors, one row per point
+     * @param steps number of steps to run each point
+     * @param seed
+     * @param output closed when the sweep is done
+     * @return number of points that failed
+     * @throws InterruptedException if interrupted while waiting for the points
+     */
+    public int run(double[][] points, long steps, long seed, Writer output) throws InterruptedException {
+        BlockingQueue<String> results = new LinkedBlockingQueue<>();
+        Thread writerThread = new Thread(() -> writeResults(results, output), "sweep-writer");
+        writerThread.start();
+        results.add(getHeader());
+        ExecutorService pool = Executors.newFixedThreadPool(myNumThreads);
+        Semaphore freeThreads = new Semaphore(myNumThreads);
+        AtomicInteger numFailed = new AtomicInteger();
+        try {
+            for (int point = 0; point < points.length; point++) {
+                freeThreads.acquire();
+                int index = point;
+                pool.execute(() -> {
+                    try {
+                        results.add(runPoint(index, points[index], steps, seed + index));
+                    }
+                    catch (InstantiationException | RuntimeException e) {
+                        numFailed.incrementAndGet();
+                        System.out.println("Point " + index + " failed: " + e);
+                    }
+                    finally {
+                        freeThreads.release();
+                    }
+                });
+            }
+        }
+        finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            results.add(END_OF_RESULTS);
+            writerThread.join();
+        }
+        return numFailed.get();
+    }
+
+    private String runPoint(int index, double[] values, long steps, long seed) throws InstantiationException {
+        Map<String, Double> overrides = new HashMap<>();
+        for (int f = 0; f < myFactors.length; f++) {
+            overrides.put(myFactors[f].getName(), values[f]);
+        }
+        Grid grid = myLoader.create(seed, overrides);
+        grid.setParallel(false);
+        long start = System.nanoTime();
+        for (long step = 0; step < steps; step++) {
+            grid.updateCells();
+        }
+        double seconds = (System.nanoTime() - start)/NANOS_PER_SECOND;
+        StringBuilder line = new StringBuilder().append(index);
+        for (double value : values) {
+            line.append(',').append(value);
+        }
+        line.append(',').append(seed).append(',').append(steps);
+        line.append(',').append(String.format(Locale.ROOT, "%.4f", seconds));
+        if (grid.isEventDriven())
+            line.append(',').append(grid.getSimulatedTime());
+        else
+            line.append(',').append(steps);
+        for (int count : BatchRunner.countStates(grid.getCurrentGeneration(), myStateNames.length)) {
+            line.append(',').append(count);
+        }
+        return line.toString();
+    }
+
+    private String getHeader() {
+        StringBuilder header = new StringBuilder("point");
+        for (SweepFactor factor : myFactors) {
+            header.append(',').append(factor.getName());
+        }
+        header.append(",seed,steps,seconds,time");
+        for (String state : myStateNames) {
+            header.append(',').append(state);
+        }
+        return header.toString();
+    }
+
+    // flushes after every line, and only closes the output once every point has been written
+    private void writeResults(BlockingQueue<String> results, Writer output) {
+        try (PrintWriter writer = new PrintWriter(output)) {
+            while (true) {
+                String line = results.take();
+                if (line.equals(END_OF_RESULTS))
+                    return;
+                writer.println(line);
+                writer.flush();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run a sweep from the command line
+     * @param args config file, number of steps, output file, design (grid or lhs), levels per factor for a grid or
+     *             number of points for a Latin hypercube, seed, and the names of the factors
+     */
+    public static void main(String[] args) {
+        if (args.length < 7 || !(args[3].equals("grid") || args[3].equals("lhs"))) {
+            System.out.println("Usage: ParameterSweep config.xml steps output.csv grid|lhs levels|points seed factor...");
+            System.exit(1);
+        }
+        File xmlFile = new File(args[0]);
+        if (!xmlFile.isFile()) {
+            System.out.println("No such config file: " + xmlFile.getPath());
+            System.exit(1);
+        }
+        try {
+            long steps = Long.parseLong(args[1]);
+            int count = Integer.parseInt(args[4]);
+            long seed = Long.parseLong(args[5]);
+            String[] factorNames = new String[args.length - 6];
+            System.arraycopy(args, 6, factorNames, 0, factorNames.length);
+            ParameterSweep sweep = new ParameterSweep(xmlFile, factorNames);
+            double[][] points = args[3].equals("grid") ? SweepDesign.grid(sweep.getFactors(), count)
+                    : SweepDesign.latinHypercube(sweep.getFactors(), count, seed);
+            long start = System.nanoTime();
+            int numFailed = sweep.run(points, steps, seed, new PrintWriter(new File(args[2])));
+            System.out.println(String.format("%d points in %.3f seconds, %d failed", points.length,
+                    (System.nanoTime() - start)/NANOS_PER_SECOND, numFailed));
+            if (numFailed > 0)
+                System.exit(1);
+        }
+        catch (NumberFormatException e) {
+            System.out.println("Steps, levels, points and seed must be whole numbers: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (IllegalArgumentException | IOException | XMLException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package Simulation;
+
+import GridCell.DirtyTiles;
+import GridCell.Grid;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Steps a grid on its own thread, so a slow step never blocks the JavaFX Application Thread. The grid belongs to the
+ * worker once it is handed over: every change to it (reset, resize, loading a new grid) is queued as a command and run
+ * between two steps. After every step or command the worker publishes a snapshot of the grid through a triple buffer,
+ * and the display takes the latest one whenever it draws a frame, skipping the ones it had no time for.
+ *
+ * Steps are scheduled at a target number of generations per second, keeping a steady rhythm when a step is a little
+ * late and starting over when it is much later, such as after a pause. In turbo mode the grid steps as fast as it can
+ * and a snapshot is only captured once the display took the last one, so the display shows one frame for every N
+ * generations instead of every generation costing a copy of the grid. The worker parks while it is paused or waiting
+ * for the next step, and measures the steps per second it actually achieves.
+ *
+ * Snapshots carry the tiles that changed since the last snapshot the display took, so the display only redraws those.
+ * The worker collects the cells each step changed, and keeps adding them up for as long as the display skips the
+ * snapshots it publishes. Commands can change anything, so they mark every tile.
+ */
+class SimulationWorker {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long RATE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_CATCH_UP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Thread myThread;
+    private final Queue<Runnable> myCommands = new ConcurrentLinkedQueue<>();
+    private final TripleBuffer<GridSnapshot> mySnapshots = new TripleBuffer<>(GridSnapshot::new);
+    private volatile boolean myRunning;
+    private volatile boolean myShutdown;
+    private volatile boolean myTurbo;
+    private volatile long myIntervalNanos;
+    private volatile double myStepsPerSecond;
+    private Grid myGrid;
+    private long myRound;
+    private long myLastStepTime;
+    private boolean myUnpublished;
+    private boolean myMeasuring;
+    private long myRateStart;
+    private int myRateSteps;
+    private DirtyTiles myChangedSincePublish;
+    private DirtyTiles myChangedSinceTaken;
+
+    /**
+     * Create a worker for a grid. The grid must not be used by any other thread once the worker is started.
+     * @param grid
+     * @param generationsPerSecond target rate while running
+     */
+    SimulationWorker(Grid grid, double generationsPerSecond) {
+        myGrid = grid;
+        setTargetRate(generationsPerSecond);
+        myLastStepTime = System.nanoTime() - myIntervalNanos;
+        resetChanges();
+        myThread = new Thread(this::runLoop, "simulation");
+        myThread.setDaemon(true);
+        publishSnapshot();
+    }
+
+    /**
+     * Start stepping thread, which waits until setRunning(true) or a command
+     */
+    void start() {
+        myThread.start();
+    }
+
+    /**
+     * @param running whether the grid steps on its own
+     */
+    void setRunning(boolean running) {
+        myRunning = running;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * @param generationsPerSecond target rate while running, more than 0
+     */
+    void setTargetRate(double generationsPerSecond) {
+        myIntervalNanos = (long) (NANOS_PER_SECOND/generationsPerSecond);
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * @param turbo whether to step as fast as possible instead of at the target rate
+     */
+    void setTurbo(boolean turbo) {
+        myTurbo = turbo;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * @return steps per second over the last half second or so of running, 0 while paused
+     */
+    double getStepsPerSecond() {
+        return myStepsPerSecond;
+    }
+
+    /**
+     * Step the grid once
+     */
+    void step() {
+        submit(this::stepGrid);
+    }
+
+    /**
+     * Change the grid on the worker thread and start counting rounds over
+     * @param change
+     */
+    void reset(Consumer<Grid> change) {
+        submit(() -> {
+            change.accept(myGrid);
+            myRound = 0;
+        });
+    }
+
+    /**
+     * Replace the grid. The new grid must not be used by any other thread afterwards.
+     * @param grid
+     */
+    void setGrid(Grid grid) {
+        submit(() -> {
+            myGrid = grid;
+            myRound = 0;
+        });
+    }
+
+    /**
+     * Only called by the thread that draws the grid
+     * @return snapshot of the latest generation published since the last call, or null if there is none
+     */
+    GridSnapshot takeSnapshot() {
+        return mySnapshots.takeLatest();
+    }
+
+    /**
+     * Stop the thread after the current step
+     */
+    void shutdown() {
+        myShutdown = true;
+        LockSupport.unpark(myThread);
+    }
+
+    private void submit(Runnable command) {
+        myCommands.add(command);
+        LockSupport.unpark(myThread);
+    }
+
+    private void runLoop() {
+        while (!myShutdown) {
+            myUnpublished |= runCommands();
+            long now = System.nanoTime();
+            if (myRunning && (myTurbo || now - myLastStepTime >= myIntervalNanos)) {
+                stepGrid();
+                scheduleNextStep(now);
+                measureRate(now);
+                myUnpublished = true;
+            }
+            // a snapshot in turbo mode that the display would skip is a wasted copy of the grid
+            if (myUnpublished && (!myRunning || !myTurbo || mySnapshots.isTaken())) {
+                publishSnapshot();
+                myUnpublished = false;
+            }
+            waitForWork();
+        }
+    }
+
+    // a step that is a little late keeps the rhythm, so the next steps catch up, and a much later one starts it over
+    private void scheduleNextStep(long now) {
+        long interval = myIntervalNanos;
+        if (!myTurbo && now - myLastStepTime - interval < MAX_CATCH_UP_NANOS)
+            myLastStepTime += interval;
+        else
+            myLastStepTime = now;
+    }
+
+    private void measureRate(long now) {
+        if (!myMeasuring) {
+            myMeasuring = true;
+            myRateStart = now;
+            myRateSteps = 0;
+            return;
+        }
+        myRateSteps++;
+        if (now - myRateStart >= RATE_WINDOW_NANOS) {
+            myStepsPerSecond = myRateSteps*(double) NANOS_PER_SECOND/(now - myRateStart);
+            myRateStart = now;
+            myRateSteps = 0;
+        }
+    }
+
+    private boolean runCommands() {
+        boolean changed = false;
+        for (Runnable command = myCommands.poll(); command != null; command = myCommands.poll()) {
+            command.run();
+            changed = true;
+        }
+        if (changed)
+            resetChanges();
+        return changed;
+    }
+
+    private void stepGrid() {
+        myGrid.updateCells();
+        myRound++;
+        DirtyTiles changes = myChangedSincePublish;
+        if (!myGrid.forEachChangedCell(changes::mark))
+            changes.markAll();
+    }
+
+    // the grid may have a new size, so every tile is redrawn
+    private void resetChanges() {
+        int size = myGrid.getGridSize();
+        if (myChangedSincePublish == null || myChangedSincePublish.getSize() != size) {
+            myChangedSincePublish = new DirtyTiles(size);
+            myChangedSinceTaken = new DirtyTiles(size);
+        }
+        myChangedSincePublish.markAll();
+    }
+
+    private void publishSnapshot() {
+        myChangedSinceTaken.add(myChangedSincePublish);
+        mySnapshots.getBack().capture(myGrid, myRound, myChangedSinceTaken);
+        if (mySnapshots.publish())
+            myChangedSinceTaken.copyFrom(myChangedSincePublish);
+        myChangedSincePublish.clear();
+    }
+
+    // returns early when a command arrives or the settings change, and at once in turbo mode
+    private void waitForWork() {
+        if (!myCommands.isEmpty() || myShutdown)
+            return;
+        if (!myRunning) {
+            myMeasuring = false;
+            myStepsPerSecond = 0;
+            LockSupport.park(this);
+        } else if (!myTurbo) {
+            LockSupport.parkNanos(this, myLastStepTime + myIntervalNanos - System.nanoTime());
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package Simulation;
 import java.io.File;
-import java.lang.reflect.Constructor;
 import XML.*;
 import GridCell.*;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Slider;
@@ -19,11 +18,13 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 /**
  * This class is the main driver for the CellSociety simulation. The class initializes the visualization by first
  * allowing the user to select an XML file for the simulation. The class then sets up the scene and all visual
- * components, including the Grid and all other UI components, such as buttons and sliders.
+ * components, including the Grid and all other UI components, such as buttons and sliders. The grid is stepped by a
+ * SimulationWorker on its own thread, and every frame draws the latest snapshot the worker published, so a slow step
+ * never blocks the UI. The grid can be zoomed and panned with the mouse, and a minimap next to it shows where the view
+ * is on the whole grid.
  * @author Dhanush Madabusi
  */
 public class SimulatorMain extends Application {
@@ -35,31 +36,28 @@ public class SimulatorMain extends Application {
     private static final double BUTTON_HEIGHT = 30.0;
     private static final double BUTTON_SPACING = 5.0;
     private static final double SLIDER_SPACING = 5.0;
-    private static final String SPECIFIED_LOCATIONS = "locations";
-    private static final String RANDOM_COMP = "random composition";
-    private static final String RANDOM_NUMS = "random numbers";
-    private static final int INITIAL_DELAY = 50;
-    private Grid myGrid;
+    private static final int INITIAL_RATE = 20;
+    private static final int MAX_RATE = 120;
+    private static final int MAX_GRID_SIZE = 1000;
+    private static final int MINIMAP_SIZE = 150;
+    private SimulationWorker myWorker;
+    private GridSnapshot mySnapshot;
+    private int myGridSize;
     private XMLParser myParser;
+    private GridLoader myLoader;
     private FileChooser myChooser;
     private Group root;
-    private Group cellGroup;
+    private GridCanvas gridCanvas;
     private VBox sliderVBox;
-    private int stepCounter = 0;
-    private boolean pauseSim;
     private Button stopButton;
     private Button startButton;
     private Stage simStage;
-    private int roundCounter = 0;
     private Text roundLabel;
-    private int sliderDelayValue = INITIAL_DELAY;
-    private boolean delayUpdated = false;
-    private int simDelay = INITIAL_DELAY;
+    private Text rateLabel;
+    private int sliderRateValue = INITIAL_RATE;
     private boolean cellBorders = true;
 
     public SimulatorMain() {
-        myGrid = null;
-        myParser = new XMLParser();
         myChooser = makeChooser();
         myChooser.setInitialDirectory(new File("data/automata"));
     }
@@ -75,61 +73,51 @@ public class SimulatorMain extends Application {
         stage.setScene(scene);
         stage.setTitle("Cellular Automata Simulator");
         stage.show();
-        var frame = new KeyFrame(Duration.ONE, e -> simulationStep());
-        var gameTime = new Timeline();
-        gameTime.setCycleCount(Timeline.INDEFINITE);
-        gameTime.getKeyFrames().add(frame);
-        gameTime.play();
+        myWorker.start();
+        var frameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                showLatestSnapshot();
+                rateLabel.setText(String.format("%.1f steps/s", myWorker.getStepsPerSecond()));
+            }
+        };
+        frameTimer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (myWorker != null)
+            myWorker.shutdown();
     }
 
     private Scene setUpScene() {
         root = new Group();
         Scene scene = new Scene(root, SCREEN_WIDTH, SCREEN_HEIGHT, Color.LIGHTCYAN);
-        cellGroup = initializeCellGroup(cellBorders);
+        gridCanvas = new GridCanvas(MINIMAP_SIZE);
         sliderVBox = initializeSliderVBox();
-        roundLabel = new SimLabel("Round " + roundCounter, 17.0, Grid.GRID_PADDING, GRID_DISPLAY_SIZE + 2*Grid.GRID_PADDING);
-        root.getChildren().addAll(cellGroup, roundLabel, initializeButtonVBox(), sliderVBox, createBorderToggle());
-        pauseSim = true;
+        roundLabel = new SimLabel("Round 0", 17.0, Grid.GRID_PADDING, GRID_DISPLAY_SIZE + 2*Grid.GRID_PADDING);
+        rateLabel = new SimLabel("0.0 steps/s", 17.0, 200.0, GRID_DISPLAY_SIZE + 2*Grid.GRID_PADDING);
+        showLatestSnapshot();
+        Node minimap = gridCanvas.getMinimapNode();
+        minimap.setLayoutX(GRID_DISPLAY_SIZE + 2*Grid.GRID_PADDING);
+        minimap.setLayoutY(Grid.GRID_PADDING);
+        root.getChildren().addAll(gridCanvas.getNode(), minimap, roundLabel, rateLabel, initializeButtonVBox(),
+                sliderVBox, createBorderToggle(), createTurboToggle());
         return scene;
     }
 
-    private void simulationStep() {
-        if (!pauseSim) {
-            if (simDelay == 0 || stepCounter % simDelay == 0) {
-                stepCounter = 0;
-                handleGridUpdate();
-            }
-            stepCounter++;
-        }
-        else if (delayUpdated){
-            simDelay = sliderDelayValue;
-            delayUpdated = false;
-        }
-    }
-
-    private void handleGridUpdate() {
-        myGrid.updateCells();
-        resetCellGroup(cellBorders);
-        incrementRoundLabel();
-    }
-
-    private Group initializeCellGroup(boolean addBorder) {
-        var gridArray = myGrid.getGrid();
-        var cellGroup = new Group();
-        for (Cell[] cellRow : gridArray){
-            for (Cell cell : cellRow){
-                cell.setCellBorder(addBorder);
-                cellGroup.getChildren().add(cell.getCellBody());
-            }
-        }
-        myGrid.setGrid(gridArray);
-        return cellGroup;
+    // called on every frame, and skips the generations that were published since the last frame
+    private void showLatestSnapshot() {
+        GridSnapshot snapshot = myWorker.takeSnapshot();
+        if (snapshot == null)
+            return;
+        mySnapshot = snapshot;
+        redrawGrid();
+        roundLabel.setText(snapshot.getProgressLabel());
     }
 
-    private void resetCellGroup(boolean addCellBorders) {
-        root.getChildren().remove(cellGroup);
-        cellGroup = initializeCellGroup(addCellBorders);
-        root.getChildren().add(cellGroup);
+    private void redrawGrid() {
+        gridCanvas.draw(mySnapshot, cellBorders);
     }
 
     private void resetSliderVBox(){
@@ -143,54 +131,22 @@ public class SimulatorMain extends Application {
         if (xmlFile == null) { //in case someone clicks cancel
             return false;
         }
-        else {
-            try {
-                getNewGrid(xmlFile);
-            } catch (InstantiationException e) {
-                System.out.println(e.getMessage());
-            }
-        }
-        return true;
-    }
-
-    private void getNewGrid(File xmlFile) throws InstantiationException {
-        myParser.parseFile(xmlFile);
-        boolean wasSuccessful = assignGrid();
-        if (!wasSuccessful)
-            throw new InstantiationException("Creating the new grid didn't work. Problem with the constructor");
-        Double[] parameters = myParser.getParameters();
-        if (parameters.length > 0)
-            myGrid.setAdditionalParams(parameters);
-    }
-
-    private boolean assignGrid() {
-        int gridSize = myParser.getGridSize();
-        CA_TYPE newType = myParser.getCAType();
-        Constructor<? extends Grid> constructor = newType.getConstructor();
+        var parser = new XMLParser();
+        var loader = new GridLoader(parser, GRID_DISPLAY_SIZE);
         try {
-            myGrid = constructor.newInstance(gridSize, GRID_DISPLAY_SIZE);
-            myGrid.setImmutables(myParser.getEdgeType(), myParser.getCellShape(), myParser.getNeighborConfig());
-            setGridConfig();
-            return true;
-        }
-        catch (InstantiationException | IllegalAccessException | java.lang.reflect.InvocationTargetException e) {
+            Grid grid = loader.load(xmlFile);
+            myParser = parser;
+            myLoader = loader;
+            myGridSize = grid.getGridSize();
+            if (myWorker == null)
+                myWorker = new SimulationWorker(grid, sliderRateValue);
+            else
+                myWorker.setGrid(grid);
+        } catch (InstantiationException e) {
+            System.out.println(e.getMessage());
             return false;
         }
-    }
-
-    private void setGridConfig(){
-        String configType = myParser.getConfigType();
-        if (configType.equals(RANDOM_COMP))
-            if (myGrid.getCurComposition() == null) {
-                myGrid.setGridRandom(myParser.getRandomComposition());
-            }
-            else{
-                myGrid.setGridRandom(myGrid.getCurComposition());
-            }
-        else if (configType.equals(SPECIFIED_LOCATIONS))
-            myGrid.setGridSpecific(myParser.getLocations());
-        else
-            myGrid.setGridRandomNum(myParser.getRandomNumbers());
+        return true;
     }
 
     private FileChooser makeChooser () {
@@ -221,63 +177,51 @@ public class SimulatorMain extends Application {
         return buttonVBox;
     }
 
+    // the loader and parameters of the file loaded last, which is the grid the worker has when it runs the reset
     private void handleReset() {
-        setGridConfig();
-        resetCellGroup(cellBorders);
-        handleAgeAndEnergyReset();
+        var loader = myLoader;
+        Double[] parameters = myParser.getParameters();
+        myWorker.reset(grid -> {
+            loader.setGridConfig(grid);
+            handleAgeAndEnergyReset(grid, parameters);
+        });
         handleStop();
-        resetRoundLabel();
     }
 
-    private void handleAgeAndEnergyReset() {
-        if (myGrid instanceof PredatorPrey){
-            Double[] parameters = myParser.getParameters();
+    private static void handleAgeAndEnergyReset(Grid grid, Double[] parameters) {
+        if (grid instanceof PredatorPrey){
             if (parameters.length > 0)
-                myGrid.setAdditionalParams(parameters);
+                grid.setAdditionalParams(parameters);
         }
     }
 
     private void handleStart() {
-        pauseSim = false;
+        myWorker.setRunning(true);
         stopButton.setDisable(false);
         startButton.setDisable(true);
     }
 
     private void handleStop() {
-        pauseSim = true;
+        myWorker.setRunning(false);
         startButton.setDisable(false);
         stopButton.setDisable(true);
     }
 
     private void handleStep() {
         handleStop();
-        handleGridUpdate();
+        myWorker.step();
     }
 
     private void handleLoadFile() {
-        pauseSim = true;
+        handleStop();
         if (handleXMLFile(simStage)) {
-            stopButton.setDisable(true);
-            startButton.setDisable(false);
-            resetCellGroup(cellBorders);
             resetSliderVBox();
-            resetRoundLabel();
         }
     }
 
-    private void incrementRoundLabel(){
-        roundCounter++;
-        roundLabel.setText("Round " + roundCounter);
-    }
-
-    private void resetRoundLabel(){
-        roundCounter = 0;
-        roundLabel.setText("Round " + roundCounter);
-    }
-
     private VBox initializeSliderVBox() {
         sliderVBox = new VBox();
-        sliderVBox.getChildren().addAll(createSizeSliderHBox(), createDelaySliderHBox());
+        sliderVBox.getChildren().addAll(createSizeSliderHBox(), createSpeedSliderHBox());
         sliderVBox.setSpacing(SLIDER_SPACING);
         sliderVBox.setLayoutX(150.0);
         sliderVBox.setLayoutY(GRID_DISPLAY_SIZE + (5*Grid.GRID_PADDING)/2);
@@ -287,8 +231,8 @@ public class SimulatorMain extends Application {
 
     private HBox createSizeSliderHBox() {
         HBox sizeSliderHBox = new HBox();
-        var sizeLabel = new SimLabel("Size: " + myGrid.getGridSize() + "x" + myGrid.getGridSize(), 17.0);
-        var sizeSlider = new SimSlider(10,50, myGrid.getGridSize());
+        var sizeLabel = new SimLabel("Size: " + myGridSize + "x" + myGridSize, 17.0);
+        var sizeSlider = new SimSlider(10,MAX_GRID_SIZE, myGridSize);
         sizeSlider.valueProperty().addListener(e -> handleSizeSliderChange(sizeSlider, sizeLabel));
         sizeSliderHBox.getChildren().addAll(sizeSlider, sizeLabel);
         sizeSliderHBox.setSpacing(20.0);
@@ -297,25 +241,26 @@ public class SimulatorMain extends Application {
 
     private void handleSizeSliderChange(Slider sizeSlider, Text sizeLabel) {
         var newSize = (int) sizeSlider.getValue();
-        myGrid.setGridSize(newSize);
+        myGridSize = newSize;
+        myWorker.reset(grid -> grid.setGridSize(newSize));
         sizeLabel.setText("Size: " + newSize + "x" + newSize);
         handleReset();
     }
 
-    private HBox createDelaySliderHBox() {
-        HBox delaySliderHBox = new HBox();
-        var delayLabel = new SimLabel("Delay: " + INITIAL_DELAY + " ms", 17.0);
-        var delaySlider = new SimSlider(50,3000, INITIAL_DELAY);
-        delaySlider.valueProperty().addListener(e -> handleDelaySliderChange(delaySlider, delayLabel));
-        delaySliderHBox.getChildren().addAll(delaySlider, delayLabel);
-        delaySliderHBox.setSpacing(20.0);
-        return delaySliderHBox;
+    private HBox createSpeedSliderHBox() {
+        HBox speedSliderHBox = new HBox();
+        var speedLabel = new SimLabel("Speed: " + sliderRateValue + " gen/s", 17.0);
+        var speedSlider = new SimSlider(1, MAX_RATE, sliderRateValue);
+        speedSlider.valueProperty().addListener(e -> handleSpeedSliderChange(speedSlider, speedLabel));
+        speedSliderHBox.getChildren().addAll(speedSlider, speedLabel);
+        speedSliderHBox.setSpacing(20.0);
+        return speedSliderHBox;
     }
 
-    private void handleDelaySliderChange(Slider delaySlider, Text delayLabel) {
-        sliderDelayValue = (int)delaySlider.getValue();
-        delayUpdated = true;
-        delayLabel.setText("Delay: " + sliderDelayValue + " ms");
+    private void handleSpeedSliderChange(Slider speedSlider, Text speedLabel) {
+        sliderRateValue = (int)speedSlider.getValue();
+        myWorker.setTargetRate(sliderRateValue);
+        speedLabel.setText("Speed: " + sliderRateValue + " gen/s");
     }
 
     private ToggleButton createBorderToggle() {
@@ -324,9 +269,16 @@ public class SimulatorMain extends Application {
         return borderToggle;
     }
 
+    // steps as fast as possible, and the display shows the latest generation on every frame
+    private ToggleButton createTurboToggle() {
+        var turboToggle = new SimToggle("Turbo", false, 450.0, GRID_DISPLAY_SIZE + (7*Grid.GRID_PADDING)/2);
+        turboToggle.selectedProperty().addListener(e -> myWorker.setTurbo(turboToggle.isSelected()));
+        return turboToggle;
+    }
+
     private void handleBorderToggle(boolean addCellBorder) {
-        resetCellGroup(addCellBorder);
         cellBorders = addCellBorder;
+        redrawGrid();
     }
 
     /**
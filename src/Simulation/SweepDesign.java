@@ -0,0 +1,68 @@
+package Simulation;
+
+import GridCell.CounterRandom;
+
+/**
+ * Chooses the points a parameter sweep runs. A point has one value per factor, in the order of the factors.
+ */
+public class SweepDesign {
+
+    private SweepDesign() {
+    }
+
+    /**
+     * Full factorial design: every combination of evenly spaced levels of every factor, the first factor changing
+     * slowest. A single level uses the middle of each range.
+     * @param factors
+     * @param levels number of values of each factor
+     * @return levels^factors points
+     */
+    public static double[][] grid(SweepFactor[] factors, int levels) {
+        int numPoints = 1;
+        for (int f = 0; f < factors.length; f++) {
+            numPoints = Math.multiplyExact(numPoints, levels);
+        }
+        double[][] points = new double[numPoints][factors.length];
+        for (int point = 0; point < numPoints; point++) {
+            int rest = point;
+            for (int f = factors.length - 1; f >= 0; f--) {
+                int level = rest % levels;
+                rest /= levels;
+                double fraction = levels == 1 ? 0.5 : level/(double) (levels - 1);
+                points[point][f] = factors[f].getValue(fraction);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Latin hypercube design: the range of every factor is split into as many strata as there are points, and each
+     * stratum of each factor holds exactly one point, at a random place inside it. Covers every factor evenly with
+     * far fewer points than a full factorial design.
+     * @param factors
+     * @param numPoints
+     * @param seed the same seed always gives the same points
+     * @return numPoints points
+     */
+    public static double[][] latinHypercube(SweepFactor[] factors, int numPoints, long seed) {
+        CounterRandom random = new CounterRandom(seed);
+        double[][] points = new double[numPoints][factors.length];
+        int[] strata = new int[numPoints];
+        for (int f = 0; f < factors.length; f++) {
+            for (int k = 0; k < numPoints; k++) {
+                strata[k] = k;
+            }
+            for (int k = numPoints - 1; k > 0; k--) {
+                int other = random.nextInt(f, k, 0, k + 1);
+                int stratum = strata[k];
+                strata[k] = strata[other];
+                strata[other] = stratum;
+            }
+            for (int point = 0; point < numPoints; point++) {
+                double fraction = (strata[point] + random.nextDouble(f, point, 1))/numPoints;
+                points[point][f] = factors[f].getValue(fraction);
+            }
+        }
+        return points;
+    }
+}
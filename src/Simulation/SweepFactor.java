@@ -0,0 +1,52 @@
+package Simulation;
+
+/**
+ * One parameter or composition value varied by a parameter sweep, between the min and max of its slider in the
+ * config file
+ */
+public class SweepFactor {
+    private final String myName;
+    private final double myMin;
+    private final double myMax;
+
+    /**
+     * Create a factor
+     * @param name tag name of the parameter or composition element
+     * @param min
+     * @param max
+     */
+    public SweepFactor(String name, double min, double max) {
+        myName = name;
+        myMin = min;
+        myMax = max;
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return value that far from the min to the max
+     */
+    public double getValue(double fraction) {
+        return myMin + fraction*(myMax - myMin);
+    }
+
+    /**
+     * @return tag name of the parameter or composition element
+     */
+    public String getName() {
+        return myName;
+    }
+
+    /**
+     * @return smallest value of the factor
+     */
+    public double getMin() {
+        return myMin;
+    }
+
+    /**
+     * @return largest value of the factor
+     */
+    public double getMax() {
+        return myMax;
+    }
+}
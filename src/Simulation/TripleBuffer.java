@@ -0,0 +1,70 @@
+package Simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands the latest of a stream of values from one writer thread to one reader thread without locks. The writer fills
+ * the back buffer and publishes it by swapping it with the middle one, and the reader takes the middle buffer by
+ * swapping it with the front one. Neither thread ever waits for the other, each owns its own buffer while using it,
+ * and the reader skips every value that was published while it was busy.
+ * @param <T> type of the buffers, which are reused instead of copied
+ */
+class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Object[] myBuffers;
+    private final AtomicInteger myMiddle = new AtomicInteger(1);
+    private int myBack = 0;
+    private int myFront = 2;
+
+    /**
+     * @param factory creates each of the three buffers
+     */
+    TripleBuffer(Supplier<T> factory) {
+        myBuffers = new Object[]{factory.get(), factory.get(), factory.get()};
+    }
+
+    /**
+     * Only called by the writer
+     * @return buffer to fill before calling publish
+     */
+    T getBack() {
+        return getBuffer(myBack);
+    }
+
+    /**
+     * Make the back buffer the latest value and take a free buffer as the new back buffer. Only called by the writer.
+     * @return whether the reader took the value published before this one, instead of skipping it
+     */
+    boolean publish() {
+        int oldMiddle = myMiddle.getAndSet(myBack | FRESH);
+        myBack = oldMiddle & INDEX_MASK;
+        return (oldMiddle & FRESH) == 0;
+    }
+
+    /**
+     * Only called by the writer
+     * @return whether the reader took the latest value, so a new one would not be skipped
+     */
+    boolean isTaken() {
+        return (myMiddle.get() & FRESH) == 0;
+    }
+
+    /**
+     * Only called by the reader. The buffer returned stays the reader's until the next call that returns a value.
+     * @return latest value published since the last call, or null if there is none
+     */
+    T takeLatest() {
+        if ((myMiddle.get() & FRESH) == 0)
+            return null;
+        myFront = myMiddle.getAndSet(myFront) & INDEX_MASK;
+        return getBuffer(myFront);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getBuffer(int index) {
+        return (T) myBuffers[index];
+    }
+}
@@ -26,7 +26,8 @@ import java.util.regex.PatternSyntaxException;
  *      - xml file doesn't conform to an automaton schema
  *      - values given to elements are out of bounds
  * Replaces error values with defaults. If an invalid xml file is given, a warning will displayed and the parser will
- * continue with parsing a default fire-random configuration file.
+ * continue with parsing a default fire-random configuration file, unless it was created to reject such files (as the
+ * headless runners do, where a silent swap would report results for the wrong config).
  * Schema validation inspired by Wayan Saryada's article.
  * @see <a href="https://kodejava.org/how-do-i-validate-xml-against-xsd-in-java/">Wayan Saryada's</a> article
  * @author Hunter Gregory
@@ -50,7 +51,10 @@ public class XMLParser {
     private static final String LOCATIONS_TAG = "configured";
     private static final String LOCATIONS_TYPE = "locations";         //aligned with SimulatorMain
     private static final String PARAMETERS_TAG = "parameters";
+    private static final String STATES_ATTRIBUTE = "states";
+    private static final String EVENT_DRIVEN_ATTRIBUTE = "event-driven";
 
+    private final boolean myUseDefaultFile;
     private File myXMLFile;
     private Element myRoot;
     private CA_TYPE myRootType;
@@ -64,9 +68,20 @@ public class XMLParser {
     private ArrayList<Double> myRandomNumbers;          //only used if myConfigType is RANDOM_COMP_TYPE
     private ArrayList<Integer[]> myStateLocations;       //only used if myConfigType is LOCATIONS_TYPE
     private ArrayList<Double> myParameters;
+    private ArrayList<String> myParameterNames;
+    private ArrayList<String> myCompositionNames;
     private LinkedHashMap<String, Double[]> mySliderMap; //ordered map so that states and params are displayed in same order as xml file
 
     public XMLParser() {
+        this(true);
+    }
+
+    /**
+     * @param useDefaultFile whether to continue with the default file when a file matches no schema, instead of
+     *                       throwing an XMLException
+     */
+    public XMLParser(boolean useDefaultFile) {
+        myUseDefaultFile = useDefaultFile;
         SCHEMAFACTORY = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         DOCUMENT_BUILDER = getDocumentBuilder();
     }
@@ -75,7 +90,7 @@ public class XMLParser {
      * Stores necessary data from the given xml file or a default file if the given file fails.
      * Additionally, overrides erroneous xml values.
      * @param xmlFile
-     * @throws XMLException
+     * @throws XMLException if the file matches no schema and the parser does not use the default file
      */
     public void parseFile(File xmlFile) {
         myXMLFile = xmlFile;
@@ -96,10 +111,13 @@ public class XMLParser {
     }
 
     private void assignRootType() {
+        myRootType = null;
         for (CA_TYPE type : CA_TYPE.values()) {
             if (fileIsType(type))
                 myRootType = type;
         }
+        if (myRootType == null && !myUseDefaultFile)
+            throw new XMLException("File does not match any automaton schema: %s", myXMLFile.getPath());
         if (myRootType == null) {
             String message = "Warning: file does not match any automaton schema. Continuing with " +
                                 "default file: " + DEFAULT_XML_FILE.getAbsolutePath();
@@ -128,7 +146,9 @@ public class XMLParser {
 
     private void assignStateNames() {
         var element = getElementNamed(STATE_NAMES_TAG);
-        myStates = element.getTextContent().split(", ");
+        // the schemas put the names in the states attribute
+        String names = element.hasAttribute(STATES_ATTRIBUTE) ? element.getAttribute(STATES_ATTRIBUTE) : element.getTextContent();
+        myStates = names.split(", ");
     }
 
     private void assignEdges() {
@@ -207,6 +227,7 @@ public class XMLParser {
         while (k < compositions.getLength()) {
             var comp = (Element) compositions.item(k);
             addSlider(comp);
+            myCompositionNames.add(comp.getTagName());
 
             Double value = getDouble(comp);
             if (value == -1 && !negativeOneIncluded) {
@@ -241,6 +262,7 @@ public class XMLParser {
         while (k<states.getLength()) {
             var state = (Element) states.item(k);
             addSlider(state);
+            myCompositionNames.add(state.getTagName());
 
             Double value = getDouble(state);
             if (value == -1 && !negativeOneIncluded) {
@@ -313,6 +335,7 @@ public class XMLParser {
         while (k<parametersList.getLength()) {
             var param = (Element) parametersList.item(k);
             addSlider(param);
+            myParameterNames.add(param.getTagName());
             myParameters.add(outOfRangeRevision(param));
             k++;
         }
@@ -371,6 +394,8 @@ public class XMLParser {
         myRandomNumbers = new ArrayList<>();
         myStateLocations = new ArrayList<>();
         myParameters = new ArrayList<>();
+        myParameterNames = new ArrayList<>();
+        myCompositionNames = new ArrayList<>();
         mySliderMap = new LinkedHashMap<>();
     }
 
@@ -437,12 +462,28 @@ public class XMLParser {
      */
     public Double[] getParameters() { return myParameters.toArray(new Double[0]); }
 
+    /**
+     * @return names of the parameters, in the same order as getParameters()
+     */
+    public String[] getParameterNames() { return myParameterNames.toArray(new String[0]); }
+
+    /**
+     * Get the names of the composition elements. Only filled if myConfigType is "random composition" or "random numbers"
+     * @return names in the same order as getRandomComposition() or getRandomNumbers()
+     */
+    public String[] getCompositionNames() { return myCompositionNames.toArray(new String[0]); }
+
     /**
      * String representation of configuration type. Will either be "random composition", "random numbers", or "locations"
      * @return type
      */
     public String getConfigType() { return myConfigType; }
 
+    /**
+     * @return whether the root element asks for the automaton to run in continuous time, which only some schemas allow
+     */
+    public boolean isEventDriven() { return Boolean.parseBoolean(myRoot.getAttribute(EVENT_DRIVEN_ATTRIBUTE)); }
+
     /**
      * @return size of GridCell.Grid for the xml file
      */
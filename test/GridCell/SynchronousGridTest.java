@@ -0,0 +1,79 @@
+package GridCell;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that stepping only the cells around the last changes gives the same generations as evaluating every cell,
+ * including for neighbor configurations that are not symmetric, where the cells a changed cell reads from are not the
+ * cells that read from it.
+ */
+class SynchronousGridTest {
+    private static final int SIZE = 24;
+    private static final int STEPS = 20;
+    private static final String[] EDGE_TYPES = {"normal", "toroidal"};
+    private static final Integer[][] NEIGHBOR_CONFIGS = {{-1}, {0, 1, 2}, {1, 2, 3}, {2, 3, 4, 5}};
+
+    @Test
+    void lifeMatchesFullEvaluation() {
+        for (CELL_SHAPE shape : CELL_SHAPE.values()) {
+            for (String edgeType : EDGE_TYPES) {
+                for (Integer[] neighborConfig : NEIGHBOR_CONFIGS) {
+                    SynchronousGrid grid = new LifeGrid(SIZE, SIZE);
+                    SynchronousGrid reference = new LifeGrid(SIZE, SIZE) {
+                        @Override
+                        protected boolean requiresFullEvaluation() {
+                            return true;
+                        }
+                    };
+                    assertSameSteps(grid, reference, shape, edgeType, neighborConfig, new Double[]{0.3, -1.0}, null);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fireWithoutLightningMatchesFullEvaluation() {
+        Double[] params = {0.5, 0.0, 3.0, 0.0};
+        for (CELL_SHAPE shape : CELL_SHAPE.values()) {
+            for (String edgeType : EDGE_TYPES) {
+                for (Integer[] neighborConfig : NEIGHBOR_CONFIGS) {
+                    SynchronousGrid grid = new FireGrid(SIZE, SIZE);
+                    SynchronousGrid reference = new FireGrid(SIZE, SIZE) {
+                        @Override
+                        protected boolean requiresFullEvaluation() {
+                            return true;
+                        }
+                    };
+                    assertSameSteps(grid, reference, shape, edgeType, neighborConfig, new Double[]{0.1, 0.85, -1.0},
+                            params);
+                }
+            }
+        }
+    }
+
+    private static void assertSameSteps(SynchronousGrid grid, SynchronousGrid reference, CELL_SHAPE shape,
+                                        String edgeType, Integer[] neighborConfig, Double[] composition,
+                                        Double[] params) {
+        for (SynchronousGrid each : new SynchronousGrid[]{grid, reference}) {
+            each.setImmutables(edgeType, shape, neighborConfig);
+            each.setSeed(1);
+            each.setGridRandom(composition);
+            if (params != null)
+                each.setAdditionalParams(params);
+        }
+        for (int step = 1; step <= STEPS; step++) {
+            grid.updateCells();
+            reference.updateCells();
+            GenerationView cells = grid.getCurrentGeneration();
+            GenerationView expected = reference.getCurrentGeneration();
+            for (int index = 0; index < expected.getNumCells(); index++) {
+                assertEquals(expected.getState(index), cells.getState(index), shape + " " + edgeType + " "
+                        + Arrays.toString(neighborConfig) + " step " + step + " cell " + index);
+            }
+        }
+    }
+}